@@ -0,0 +1,83 @@
+import megl.polyforms.*;
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintWriter;
+/**
+Given p, q, tiles, counts every polyform with up to the given number of tiles in the {p,q} tessellation
+by its number of tiles and holes, and prints the counts as CSV with the columns tiles, holes, rooted and free.
+Rooted polyforms are the ones containing the tile (1,0), and free polyforms are the ones that no rotation, reflection
+or translation of the tessellation maps onto each other. The tessellation gets as many rings as the polyforms can reach.
+
+Options can follow the three numbers:
+    --threads n    counts with n threads at once (default 1)
+    --rooted-only  skips counting free polyforms, which is faster
+    --output f     writes the CSV to the file f instead of printing it
+*/
+public class PolyformCensusRunner {
+    public static void main(String[] args){
+        int p, q, tiles;
+        int threads = 1;
+        boolean free = true;
+        String output = null;
+        try{
+            p = Integer.parseInt(args[0]);
+            q = Integer.parseInt(args[1]);
+            tiles = Integer.parseInt(args[2]);
+        }
+        catch(NumberFormatException|ArrayIndexOutOfBoundsException e){
+            System.err.println("You must enter three int arguments: p, q, tiles");
+            return;
+        }
+        for(int i = 3; i < args.length; i++){
+            try{
+                if(args[i].equals("--threads"))
+                    threads = Integer.parseInt(args[++i]);
+                else if(args[i].equals("--rooted-only"))
+                    free = false;
+                else if(args[i].equals("--output"))
+                    output = args[++i];
+                else {
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+                }
+            }
+            catch(NumberFormatException e){
+                System.err.println("Option " + args[i-1] + " needs an int value");
+                return;
+            }
+            catch(ArrayIndexOutOfBoundsException e){
+                System.err.println("Option " + args[i-1] + " needs a value");
+                return;
+            }
+        }
+        if(threads < 1){
+            System.err.println("At least one thread is needed");
+            return;
+        }
+        if((p-2)*(q-2) < 4){
+            System.err.println(String.format("{%d,%d} is not a tessellation of the plane.", p, q));
+            return;
+        }
+        if(tiles < 1){
+            System.err.println("The polyforms need at least one tile");
+            return;
+        }
+        if((p-2)*(q-2) > 4 && !new RingSizeCalculator(p, q).fitsInInt(tiles + 1)){
+            System.err.println(String.format("The {%d,%d} tessellation is too large to count polyforms of %d tiles.", p, q, tiles));
+            return;
+        }
+
+        PolyformCensus census = new PolyformCensus(new Tessellation(p, q, 1, true), tiles);
+        census.count(threads, free);
+        if(output == null){
+            census.writeCsv(new PrintWriter(System.out));
+            return;
+        }
+        try(PrintWriter writer = new PrintWriter(new File(output))){
+            census.writeCsv(writer);
+        }
+        catch(IOException e){
+            System.err.println("Could not write " + output + ": " + e.getMessage());
+        }
+    }
+}
@@ -0,0 +1,40 @@
+import megl.polyforms.*;
+/**
+Prints the results of searches for the polyform with the most holes, the same way for SimplePolyformChecker and ShardMerger.
+*/
+class SearchReport {
+    /**
+    Prints the number of holes and the tiles of the best polyform that was found.
+    @param plane the tessellation that was searched
+    @param p the number of sides of each tile
+    @param q the number of tiles around each vertex
+    @param tiles the largest number of tiles in a polyform that was searched
+    @param found the absolute indices of the tiles of the best polyform
+    */
+    static void printAnimal(Tessellation plane, int p, int q, int tiles, TileSet found){
+        Polyform animal = new Polyform(plane, found);
+        Tile[] foundTiles = animal.getTiles();
+
+        System.out.println(String.format("In the {%d,%d} tessellation with %d rings, the best result with up to %d tiles had %d holes.", p, q, plane.getRings(), tiles, Polyform.numHoles(plane, animal.getAnimal())));
+        System.out.print(String.format("A minimal animal that met this result had %d tiles: ", foundTiles.length));
+        for(int i = 0; i < foundTiles.length -1; i++)
+            System.out.print(foundTiles[i] + ", ");
+        System.out.println(foundTiles[foundTiles.length -1]);
+    }
+
+    /**
+    Prints how many polyforms were searched and pruned, and whether the result is proven optimal.
+    @param result the result of the search
+    @param rings the number of rings of the tessellation that was searched
+    @param shard the shard that was searched, or null if it was the whole search
+    */
+    static void printSearch(PolyformSearchResult result, int rings, SearchShard shard){
+        System.out.println(String.format("%d polyforms were searched and %d were not extended because of the hole bound.", result.getVisited(), result.getPruned()));
+        if(shard != null)
+            System.out.println(String.format("This is only the best result of shard %s. Merge the results of every shard with ShardMerger.", shard));
+        else if(result.isProvenOptimal())
+            System.out.println("This result is proven optimal: no polyform with up to that many tiles does better anywhere in the tessellation.");
+        else
+            System.out.println(String.format("This result is not proven optimal, since polyforms reach the edge of the %d rings searched.", rings));
+    }
+}
@@ -0,0 +1,41 @@
+import megl.polyforms.*;
+import java.util.ArrayList;
+import java.io.File;
+import java.io.IOException;
+/**
+Given the result files written by every shard of a search with SimplePolyformChecker --shard i/N,
+combines them into the result of the whole search and prints it the same way SimplePolyformChecker does.
+The files can be given in any order, but every shard from 0 to N-1 of the same search must be there exactly once.
+*/
+public class ShardMerger {
+    public static void main(String[] args){
+        if(args.length == 0){
+            System.err.println("You must enter the result file of every shard");
+            return;
+        }
+        ArrayList<ShardResult> results = new ArrayList<ShardResult>();
+        for(String file : args){
+            try{
+                results.add(ShardResult.read(new File(file)));
+            }
+            catch(IOException e){
+                System.err.println("Could not read " + file + ": " + e.getMessage());
+                return;
+            }
+        }
+        ShardResult result;
+        try{
+            result = ShardResult.merge(results);
+        }
+        catch(IllegalArgumentException e){
+            System.err.println(e.getMessage());
+            return;
+        }
+        int[] search = result.getSearch();
+        int p = search[0], q = search[1], rings = search[2], tiles = search[3];
+        Tessellation plane = new Tessellation(p, q, rings);
+        System.out.println(String.format("Merged %d shards.", results.size()));
+        SearchReport.printAnimal(plane, p, q, tiles, result.getAnimal());
+        SearchReport.printSearch(result, rings, null);
+    }
+}
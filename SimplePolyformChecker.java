@@ -1,5 +1,8 @@
 import megl.polyforms.*;
-import java.util.Arrays;
+import java.math.BigInteger;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
 /**
 Given p, q, rings, tiles, searches for a polyform up to the given 
 number of tiles in the {p,q} tessellation contained within the 
@@ -8,10 +11,34 @@ about the polyform with most holes and fewest tiles that it found.
 
 It is not recommended to use rings higher than 2 or {p,q} that are 
 too large as this will cause it to take a very long time to complete.
+
+Options can follow the four numbers:
+    --threads n    searches with n threads at once (default 1)
+    --exhaustive   extends every polyform, instead of skipping those whose hole bound shows they can't beat the best so far
+    --checkpoint f saves the progress of the search to the file f every minute
+    --resume f     continues the search saved in the file f, and keeps saving to it
+    --shard i/N    only searches shard i of N (see SearchShard), and writes its result to the file shard-i-of-N.result
+    --result f     writes the result of the shard to the file f instead
+    --by-extension uses the older search that extends each polyform from the tile added last, with one thread
+    --tt-capacity n  remembers up to n reached polyforms in the transposition table of --by-extension (default enough for the search, up to 2^22)
+Run every shard from 0 to N-1 of the same search, on any machines, and combine their result files with ShardMerger.
 */
 public class SimplePolyformChecker {
+    /**
+    The number of milliseconds between checkpoints.
+    */
+    static final long CHECKPOINT_INTERVAL = 60000;
+
     public static void main(String[] args){
         int p, q, rings, tiles;
+        int threads = 1;
+        boolean bound = true;
+        String checkpointFile = null;
+        boolean resume = false;
+        SearchShard shard = null;
+        String resultFile = null;
+        boolean byExtension = false;
+        int tableCapacity = -1;
         try{
             p = Integer.parseInt(args[0]);
             q = Integer.parseInt(args[1]);
@@ -22,16 +49,130 @@ public class SimplePolyformChecker {
             System.err.println("You must enter four int arguments: p, q, rings, tiles");
             return;
         }
+        for(int i = 4; i < args.length; i++){
+            try{
+                if(args[i].equals("--threads"))
+                    threads = Integer.parseInt(args[++i]);
+                else if(args[i].equals("--exhaustive"))
+                    bound = false;
+                else if(args[i].equals("--checkpoint") || args[i].equals("--resume")){
+                    resume = args[i].equals("--resume");
+                    checkpointFile = args[++i];
+                }
+                else if(args[i].equals("--shard"))
+                    shard = SearchShard.parse(args[++i]);
+                else if(args[i].equals("--result"))
+                    resultFile = args[++i];
+                else if(args[i].equals("--by-extension"))
+                    byExtension = true;
+                else if(args[i].equals("--tt-capacity"))
+                    tableCapacity = Integer.parseInt(args[++i]);
+                else {
+                    System.err.println("Unknown option " + args[i]);
+                    return;
+                }
+            }
+            catch(NumberFormatException e){
+                System.err.println("Option " + args[i-1] + " needs an int value");
+                return;
+            }
+            catch(ArrayIndexOutOfBoundsException e){
+                System.err.println("Option " + args[i-1] + " needs a value");
+                return;
+            }
+            catch(IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        if(resultFile != null && shard == null){
+            System.err.println("Option --result needs --shard");
+            return;
+        }
+        if(tableCapacity != -1 && !byExtension){
+            System.err.println("Option --tt-capacity needs --by-extension");
+            return;
+        }
+        if(byExtension && (threads != 1 || !bound || checkpointFile != null || shard != null)){
+            System.err.println("Option --by-extension can't be used with --threads, --exhaustive, --checkpoint, --resume or --shard");
+            return;
+        }
+        TranspositionTable table = null;
+        if(byExtension){
+            try{
+                table = new TranspositionTable(tableCapacity == -1 ? PolyformFinder.extensionTableCapacity(p, 1, tiles) : tableCapacity);
+            }
+            catch(IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                return;
+            }
+        }
+        if(threads < 1){
+            System.err.println("At least one thread is needed");
+            return;
+        }
+        if((p-2)*(q-2) > 4){ // checks the size of the tessellation before any tiles are made
+            RingSizeCalculator calculator = new RingSizeCalculator(p, q);
+            if(!calculator.fitsInInt(rings)){
+                System.err.println(String.format("The {%d,%d} tessellation can have at most %d rings.", p, q, calculator.maxRings()));
+                return;
+            }
+            BigInteger needed = calculator.estimateTessellationBytes(rings);
+            if(needed.compareTo(BigInteger.valueOf(Runtime.getRuntime().maxMemory())) > 0)
+                System.err.println(String.format("Warning: %s tiles need about %d MB, more than the %d MB available.", 
+                        calculator.totalTiles(rings), needed.shiftRight(20), Runtime.getRuntime().maxMemory() >> 20));
+        }
+        SearchCheckpoint checkpoint = null;
+        if(checkpointFile != null){
+            try{
+                if(resume){
+                    checkpoint = SearchCheckpoint.load(new File(checkpointFile), CHECKPOINT_INTERVAL);
+                    System.out.println(String.format("Resuming with %d parts of the search already finished.", checkpoint.finishedUnits()));
+                }
+                else
+                    checkpoint = new SearchCheckpoint(new File(checkpointFile), CHECKPOINT_INTERVAL);
+            }
+            catch(IOException e){
+                System.err.println("Could not read the checkpoint: " + e.getMessage());
+                return;
+            }
+        }
         Tessellation plane = new Tessellation(p, q, rings);
-        Polyform animal = new Polyform(PolyformFinder.findHoleyestAnimal(plane, tiles));
-        Tile[] foundTiles = new Tile[1];
-        foundTiles = animal.getAnimal().toArray(foundTiles);
-        Arrays.sort(foundTiles);
-        
-        System.out.println(String.format("In the {%d,%d} tessellation with %d rings, the best result with up to %d tiles had %d holes.", p, q, rings, tiles, Polyform.numHoles(plane, animal.getAnimal())));
-        System.out.print(String.format("A minimal animal that met this result had %d tiles: ", foundTiles.length));
-        for(int i = 0; i < foundTiles.length -1; i++)
-            System.out.print(foundTiles[i] + ", ");
-        System.out.println(foundTiles[foundTiles.length -1]);
+        if(byExtension){
+            TileSet found;
+            try{
+                found = PolyformFinder.findHoleyestAnimalByExtension(plane, tiles, table);
+            }
+            catch(IllegalArgumentException e){
+                System.err.println(e.getMessage());
+                return;
+            }
+            SearchReport.printAnimal(plane, p, q, tiles, found);
+            System.out.println(String.format("The transposition table of %d polyforms had %d hits, %d misses and %d evictions.",
+                    table.getCapacity(), table.getHits(), table.getMisses(), table.getEvictions()));
+            return;
+        }
+        PolyformSearchResult result;
+        try{
+            if(shard == null)
+                result = PolyformFinder.searchHoleyestAnimal(plane, tiles, threads, bound, checkpoint);
+            else {
+                ShardResult shardResult = PolyformFinder.searchShard(plane, tiles, threads, bound, shard, checkpoint);
+                File file = new File(resultFile != null ? resultFile : String.format("shard-%d-of-%d.result", shard.getIndex(), shard.getCount()));
+                shardResult.write(file);
+                System.out.println(String.format("Wrote the result of shard %s to %s.", shard, file));
+                result = shardResult;
+            }
+        }
+        catch(IllegalArgumentException|UncheckedIOException e){
+            System.err.println(e.getMessage());
+            return;
+        }
+        catch(IOException e){
+            System.err.println("Could not write the result of the shard: " + e.getMessage());
+            return;
+        }
+        SearchReport.printAnimal(plane, p, q, tiles, result.getAnimal());
+        SearchReport.printSearch(result, rings, shard);
     }
-}
\ No newline at end of file
+}
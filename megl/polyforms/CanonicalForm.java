@@ -0,0 +1,313 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+Encodes polyforms so that two polyforms get the same code if and only if some isometry of the tessellation
+maps one onto the other, which lets searches and archives keep one copy of each free polyform.
+Every tile of a regular tessellation looks the same, so an isometry is fixed by where it sends one tile, which of that
+tile's p neighbors comes first, and whether the neighbors are then read clockwise or counterclockwise.
+The code of a polyform for one such choice of root, start and direction is made by a breadth first search over the polyform
+and the tiles that share a vertex with it, which connect tiles of the polyform that only meet at a vertex:
+    Tiles are numbered in the order they are found, starting with the root as 1.
+    Each tile reads its neighbors starting from the one it was found from (the root starts from the chosen neighbor),
+        going around it in the chosen direction, and writes 2*number + 1 for a neighbor in the polyform,
+        2*number for one of the other tiles searched, and 0 for any other neighbor.
+The canonical code is the lexicographically smallest of the 2p codes for each tile of the polyform.
+Since no choice depends on where the polyform is, this is the same as re-rooting it at each tile and applying each rotation
+and reflection. Codes are only compared for polyforms none of whose tiles are in the outermost ring of the tessellation,
+since some neighbors of those tiles were not made.
+Each instance keeps scratch space with one int per tile, so every thread should use its own.
+*/
+public class CanonicalForm {
+    /**
+    The tessellation, with the neighbors of each tile in clockwise order.
+    */
+    final TessellationComplex complex;
+
+    /**
+    The stamp of each tile that was last marked, either as part of the polyform or as one of the other tiles searched.
+    */
+    final int[] marks;
+
+    /**
+    The stamp of the search that last numbered each tile.
+    */
+    final int[] seen;
+
+    /**
+    The number each tile was given by the search that last numbered it.
+    */
+    final int[] numbers;
+
+    /**
+    The position in its clockwise order that each tile reads its neighbors from.
+    */
+    final int[] entries;
+
+    /**
+    The tiles in the order the current search found them.
+    */
+    int[] queue;
+
+    /**
+    Scratch space for the code being written by symmetries.
+    */
+    int[] code;
+
+    /**
+    Scratch space for the smallest code found by symmetries.
+    */
+    int[] best;
+
+    /**
+    The most recently used stamp of marks.
+    */
+    int markStamp;
+
+    /**
+    The stamp of the tiles of the polyform that was last marked.
+    */
+    int inAnimal;
+
+    /**
+    The stamp of the other tiles searched around the polyform that was last marked.
+    */
+    int around;
+
+    /**
+    The number of tiles in the polyform that was last marked.
+    */
+    int size;
+
+    /**
+    The most recently used stamp of seen.
+    */
+    int searchStamp;
+
+    /**
+    Creates scratch space for encoding polyforms in the given tessellation.
+    @param complex the tessellation, with the neighbors of each tile in clockwise order
+    */
+    public CanonicalForm(TessellationComplex complex){
+        this.complex = complex;
+        int n = complex.plane.size();
+        this.marks = new int[n];
+        this.seen = new int[n];
+        this.numbers = new int[n];
+        this.entries = new int[n];
+        this.queue = new int[16];
+        this.code = new int[16];
+        this.best = new int[16];
+    }
+
+    /**
+    Returns the canonical code of a polyform.
+    @param animal the indices of the tiles composing the polyform
+    @return a code that is equal to the code of another polyform iff they are the same free polyform
+    @throws IllegalArgumentException if the polyform is empty or its tiles are not all connected through edges and vertices
+    */
+    public int[] encode(int[] animal){
+        if(animal.length == 0)
+            throw new IllegalArgumentException("can't encode a polyform with no tiles");
+        int searched = mark(animal, animal.length);
+        int length = 1 + complex.p*searched;
+        int[] best = null;
+        int[] code = new int[length];
+        int[] roots = animal.clone();
+        Arrays.sort(roots);
+        int previous = -1;
+        for(int root : roots){
+            if(root == previous)
+                continue;
+            previous = root;
+            for(int start = 0; start < complex.p; start++)
+                for(int direction = 1; direction >= -1; direction -= 2)
+                    if(search(root, start, direction, code, best, length) < 0){
+                        if(best == null)
+                            best = new int[length];
+                        System.arraycopy(code, 0, best, 0, length);
+                    }
+        }
+        return best;
+    }
+
+    /**
+    Returns the number of isometries of the tessellation that map a polyform onto itself, which is the number of choices
+    of root, start and direction that give its canonical code. Since every tile has 2p choices, a polyform of n tiles has
+    2pn/symmetries(animal, n) copies that contain any given tile.
+    Makes no new objects once the scratch space is large enough, so it can be called for every polyform of a large search.
+    @param animal an array starting with the indices of the tiles of the polyform, without duplicates
+    @param size the number of tiles in the polyform
+    @return the number of isometries that map the polyform onto itself, from 1 to 2pn
+    @throws IllegalArgumentException if the polyform is empty or its tiles are not all connected through edges and vertices
+    */
+    public int symmetries(int[] animal, int size){
+        if(size == 0)
+            throw new IllegalArgumentException("can't encode a polyform with no tiles");
+        int searched = mark(animal, size);
+        int length = 1 + complex.p*searched;
+        if(code.length < length){
+            code = new int[length];
+            best = new int[length];
+        }
+        int count = 0;
+        int order;
+        for(int i = 0; i < size; i++)
+            for(int start = 0; start < complex.p; start++)
+                for(int direction = 1; direction >= -1; direction -= 2){
+                    order = search(animal[i], start, direction, code, (count == 0 ? null : best), length);
+                    if(order < 0){
+                        System.arraycopy(code, 0, best, 0, length);
+                        count = 1;
+                    }
+                    else if(order == 0)
+                        count++;
+                }
+        return count;
+    }
+
+    /**
+    Marks the tiles of a polyform and the other tiles sharing a vertex with it with new stamps, and makes sure the queue can hold them.
+    @param animal an array starting with the indices of the tiles of the polyform
+    @param length the number of entries of the array that are used
+    @return the number of tiles marked, which are the tiles a search can reach
+    */
+    private int mark(int[] animal, int length){
+        if(markStamp > Integer.MAX_VALUE - 2){
+            Arrays.fill(marks, 0);
+            markStamp = 0;
+        }
+        inAnimal = ++markStamp;
+        around = ++markStamp;
+        size = 0;
+        int id;
+        for(int i = 0; i < length; i++){
+            id = animal[i];
+            if(marks[id] != inAnimal){
+                marks[id] = inAnimal;
+                size++;
+            }
+        }
+        int searched = size;
+        int p = complex.p;
+        int v, other;
+        for(int i = 0; i < length; i++)
+            for(int corner = 0; corner < p; corner++){ // the tiles around each corner, which the stamps keep from being counted twice
+                v = complex.tileVertices[animal[i]*p + corner];
+                for(int k = complex.vertexOffsets[v]; k < complex.vertexOffsets[v+1]; k++){
+                    other = complex.vertexTiles[k];
+                    if(marks[other] != inAnimal && marks[other] != around){
+                        marks[other] = around;
+                        searched++;
+                    }
+                }
+            }
+        if(queue.length < searched)
+            queue = new int[searched];
+        return searched;
+    }
+
+    /**
+    Returns the canonical code of a polyform given as a set of absolute tile indices, like the tiles of a Polyform.
+    @param animal the absolute indices of the tiles composing the polyform
+    @return a code that is equal to the code of another polyform iff they are the same free polyform
+    @throws IllegalArgumentException if the polyform is empty, not connected, or has tiles outside the tessellation
+    */
+    public int[] encode(TileSet animal){
+        if(animal.last() >= complex.plane.size())
+            throw new IllegalArgumentException("tile " + animal.last() + " is not in the tessellation");
+        return encode(animal.toArray());
+    }
+
+    /**
+    Returns a 64 bit key made from the canonical code of a polyform, so that free polyforms can be stored in key sets.
+    Different free polyforms share a key with about the same chance as different polyforms share a ZobristKeys key.
+    @param animal the indices of the tiles composing the polyform
+    @return the key of the polyform's canonical code
+    */
+    public long key(int[] animal){
+        int[] code = encode(animal);
+        long key = code.length;
+        for(int value : code)
+            key = (key ^ value) * 0x100000001b3L;
+        key = (key ^ (key >>> 30)) * 0xbf58476d1ce4e5b9L;
+        key = (key ^ (key >>> 27)) * 0x94d049bb133111ebL;
+        return key ^ (key >>> 31);
+    }
+
+    /**
+    Returns true if and only if some isometry of the tessellation maps one polyform onto the other.
+    @param a the indices of the tiles of a polyform
+    @param b the indices of the tiles of another polyform
+    @return true iff the polyforms are the same free polyform
+    */
+    public boolean isSameShape(int[] a, int[] b){
+        return Arrays.equals(encode(a), encode(b));
+    }
+
+    /**
+    Writes the code for one root, start and direction, stopping as soon as it is larger than the best code so far.
+    The polyform is the one last marked by mark.
+    @param root the index of the tile numbered 1
+    @param start the position in the root's clockwise order of the first neighbor it reads
+    @param direction 1 to read neighbors clockwise, -1 to read them counterclockwise
+    @param code where the code is written
+    @param best the smallest code so far, or null if there is none
+    @param length the length of a code
+    @return a negative number if the code is smaller than the best code or there is none, 0 if they are equal, and a positive number if it is larger
+    @throws IllegalArgumentException if the search does not reach every tile of the polyform
+    */
+    private int search(int root, int start, int direction, int[] code, int[] best, int length){
+        if(searchStamp == Integer.MAX_VALUE){
+            Arrays.fill(seen, 0);
+            searchStamp = 0;
+        }
+        int stamp = ++searchStamp;
+        int p = complex.p;
+        boolean smaller = (best == null);
+        int written = 0;
+        int found = 1;
+        int reached = 1;
+        seen[root] = stamp;
+        numbers[root] = 1;
+        entries[root] = start;
+        queue[0] = root;
+        code[written++] = 3; // every root is in the animal
+
+        int tile, next, value;
+        for(int i = 0; i < found; i++){
+            tile = queue[i];
+            for(int j = 0; j < p; j++){
+                next = complex.order[tile*p + Math.floorMod(entries[tile] + direction*j, p)];
+                if(next < 0 || (marks[next] != inAnimal && marks[next] != around))
+                    value = 0;
+                else {
+                    if(seen[next] != stamp){
+                        seen[next] = stamp;
+                        numbers[next] = ++found;
+                        entries[next] = complex.positionOf(next, tile);
+                        queue[found - 1] = next;
+                        if(marks[next] == inAnimal)
+                            reached++;
+                    }
+                    value = 2*numbers[next] + (marks[next] == inAnimal ? 1 : 0);
+                }
+                if(!smaller && value != best[written]){
+                    if(value > best[written])
+                        return 1;
+                    smaller = true;
+                }
+                code[written++] = value;
+            }
+        }
+        if(reached < size)
+            throw new IllegalArgumentException("the polyform is not connected");
+        while(written < length){ // only near the edge of the tessellation can some searched tiles be out of reach
+            if(!smaller && best[written] != 0)
+                smaller = true;
+            code[written++] = 0;
+        }
+        return (smaller ? -1 : 0);
+    }
+}
@@ -0,0 +1,248 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+A compact representation of some number of rings of tiles in the {p,q} tessellation.
+Instead of one Tile object per tile, every tile is identified by its absolute index (see Tile.getAbsoluteIndex)
+and all adjacencies are stored in two flat arrays in compressed sparse row form:
+the neighbors of tile id are neighbors[neighborOffsets[id]] through neighbors[neighborOffsets[id+1]-1].
+Neighbors are listed in the same order as the tile's adjacent[] array, with null entries left out.
+A tile is on the edge of the tessellation if and only if it has fewer than p neighbors.
+*/
+public class CompactTessellation {
+    /**
+    Specifies how many tiles share an edge with any given tile.
+    */
+    final int p;
+
+    /**
+    Specifies how many tiles share any given vertex.
+    */
+    final int q;
+
+    /**
+    Specifies how many rings of tiles are in the tessellation, not including ring 0.
+    */
+    final int rings;
+
+    /**
+    Contains how many tiles are in each ring, same as Tessellation.ringSizes.
+    */
+    final int[] ringSizes;
+
+    /**
+    Contains the index of the first tile of each ring. ringOffsets[ring] is the sum of ringSizes[0] through ringSizes[ring-1],
+    and ringOffsets[rings+1] is the total number of tiles.
+    */
+    final int[] ringOffsets;
+
+    /**
+    The ring of every tile, by index. A char holds any ring number, since even the Euclidean tessellations,
+    whose rings grow slowest, have more tiles than an int can index long before they have 65536 rings.
+    */
+    final char[] ringOf;
+
+    /**
+    The start of each tile's neighbors in the neighbors array. Has one more entry than there are tiles.
+    */
+    final int[] neighborOffsets;
+
+    /**
+    The indices of every tile's neighbors, grouped by tile.
+    */
+    final int[] neighbors;
+
+    /**
+    The key of every tile, used to identify polyforms by the XOR of the keys of their tiles (see ZobristKeys).
+    */
+    final long[] keys;
+
+    /**
+    Creates a compact copy of the given tessellation. The tessellation is not modified or referenced afterwards.
+    @param plane the tessellation that will be copied
+    */
+    public CompactTessellation(Tessellation plane){
+        this.p = plane.p;
+        this.q = plane.q;
+        this.rings = plane.rings;
+        this.ringSizes = new int[rings+1];
+        for(int i = 0; i <= rings; i++)
+            ringSizes[i] = plane.ringSizes[i];
+
+        this.ringOffsets = new int[rings+2];
+        for(int i = 0; i <= rings; i++)
+            ringOffsets[i+1] = ringOffsets[i] + ringSizes[i];
+
+        int size = ringOffsets[rings+1];
+        this.ringOf = new char[size];
+        for(int ring = 1; ring <= rings; ring++)
+            Arrays.fill(ringOf, ringOffsets[ring], ringOffsets[ring+1], (char) ring);
+
+        this.neighborOffsets = new int[size+1];
+        int edges = 0;
+        for(int id = 0; id < size; id++){
+            for(Tile t : plane.tessellation.get(id).adjacent)
+                if(t != null)
+                    edges++;
+            neighborOffsets[id+1] = edges;
+        }
+
+        this.neighbors = new int[edges];
+        int next = 0;
+        for(int id = 0; id < size; id++)
+            for(Tile t : plane.tessellation.get(id).adjacent)
+                if(t != null)
+                    neighbors[next++] = index(t.ringNum, t.ringPos);
+
+        this.keys = new long[size];
+        for(int ring = 0; ring <= rings; ring++)
+            for(int pos = 0; pos < ringSizes[ring]; pos++)
+                keys[ringOffsets[ring] + pos] = ZobristKeys.key(ring, pos);
+    }
+
+    /**
+    Creates a compact {p,q} tessellation with the given number of rings.
+    The Tile objects needed to find the adjacencies are discarded once it is made.
+    @param p the number of Tiles that share an edge with any given Tile
+    @param q the number of Tiles that share any given vertex
+    @param rings the number of rings that will be generated
+    */
+    public CompactTessellation(int p, int q, int rings){
+        this(new Tessellation(p, q, rings));
+    }
+
+    /**
+    Returns the total number of tiles in the tessellation.
+    @return the number of tiles
+    */
+    public int size(){
+        return ringOffsets[rings+1];
+    }
+
+    /**
+    Returns how many tiles are in the specified ring, or -1 if its out of bounds.
+    @param ring the ring whose size will be returned
+    @return the number of tiles in the ring or -1 if the given ring was not made
+    */
+    public int sizeOfRing(int ring){
+        if(ring < 0 || ring > rings)
+            return -1;
+        return ringSizes[ring];
+    }
+
+    /**
+    Returns the index of the tile at the given coordinate, or -1 if it is out of bounds.
+    @param ringNum the ring of the tile
+    @param ringPos the position of the tile in its ring
+    @return the absolute index of the tile, or -1 if it is not in the tessellation
+    */
+    public int index(int ringNum, int ringPos){
+        if(ringNum < 0 || ringNum > rings || ringPos < 0 || ringPos >= ringSizes[ringNum])
+            return -1;
+        return ringOffsets[ringNum] + ringPos;
+    }
+
+    /**
+    Returns the index of the tile with the same coordinates as the given tile, or -1 if there is none.
+    @param tile the tile whose index will be found
+    @return the absolute index of the tile, or -1 if it is null or not in the tessellation
+    */
+    public int index(Tile tile){
+        if(tile == null)
+            return -1;
+        return index(tile.ringNum, tile.ringPos);
+    }
+
+    /**
+    Returns the ring that the tile with the given index is in, looked up in a table made with the tessellation.
+    @param id the index of a tile
+    @return the ringNum of the tile
+    @throws IndexOutOfBoundsException if no tile has the given index
+    */
+    public int getRingNum(int id){
+        if(id < 0 || id >= ringOf.length)
+            throw new IndexOutOfBoundsException("no tile has index " + id);
+        return ringOf[id];
+    }
+
+    /**
+    Returns the position in its ring of the tile with the given index.
+    @param id the index of a tile
+    @return the ringPos of the tile
+    */
+    public int getRingPos(int id){
+        return id - ringOffsets[getRingNum(id)];
+    }
+
+    /**
+    Creates a Tile with the coordinates of the tile with the given index. It has no adjacencies.
+    @param id the index of a tile
+    @return a Tile that is equal to the tile with the given index
+    */
+    public Tile toTile(int id){
+        int ringNum = getRingNum(id);
+        return new Tile(ringNum, id - ringOffsets[ringNum]);
+    }
+
+    /**
+    Returns how many tiles share an edge with the given tile and are in this tessellation.
+    @param id the index of a tile
+    @return the number of neighbors of the tile
+    */
+    public int degree(int id){
+        return neighborOffsets[id+1] - neighborOffsets[id];
+    }
+
+    /**
+    Returns the index of one of the given tile's neighbors.
+    @param id the index of a tile
+    @param k which neighbor will be returned, 0 <= k < degree(id)
+    @return the index of the kth neighbor of the tile
+    */
+    public int neighbor(int id, int k){
+        return neighbors[neighborOffsets[id] + k];
+    }
+
+    /**
+    Returns the key of a tile. The key of a polyform is the XOR of the keys of its tiles.
+    @param id the index of a tile
+    @return the same key as ZobristKeys.key(getRingNum(id), getRingPos(id))
+    */
+    public long key(int id){
+        return keys[id];
+    }
+
+    /**
+    Returns true if and only if the tile is on the edge of the tessellation, meaning some of its neighbors were not made.
+    @param id the index of a tile
+    @return true iff the tile has fewer than p neighbors
+    */
+    public boolean isBoundary(int id){
+        return neighborOffsets[id+1] - neighborOffsets[id] < p;
+    }
+
+    /**
+    Returns the p of the tessellation.
+    @return the number of tiles that share an edge with any given tile
+    */
+    public int getP(){
+        return p;
+    }
+
+    /**
+    Returns the q of the tessellation.
+    @return the number of tiles that share any given vertex
+    */
+    public int getQ(){
+        return q;
+    }
+
+    /**
+    Returns the number of rings in the tessellation, not including ring 0.
+    @return the number of rings
+    */
+    public int getRings(){
+        return rings;
+    }
+}
@@ -0,0 +1,200 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+The polyforms of one level of a breadth first search, packed into large shared byte arrays instead of an object each
+(see ParallelFrontier). Every polyform of a level has the same number of tiles, and is kept as its sorted tile indices:
+the first index, and then the gap to each next index less one, each written as a varint of 7 bits per byte.
+Tiles of a polyform are close together, so most gaps take one byte, and a polyform of 15 tiles usually takes under 20 bytes.
+The bytes are in pages of PAGE_SIZE bytes, and no polyform is split between two pages. The position of every
+INDEX_STRIDE-th polyform is kept, so reading can start at any polyform whose number is a multiple of INDEX_STRIDE,
+and read on from there. Polyforms can only be added at the end, and once they are all added, several threads can read at once.
+*/
+final class CompressedFrontier {
+    /**
+    The number of bits in the position of a byte within its page.
+    */
+    static final int PAGE_BITS = 20;
+
+    /**
+    The number of bytes in each page.
+    */
+    static final int PAGE_SIZE = 1 << PAGE_BITS;
+
+    /**
+    Only the position of every polyform whose number is a multiple of this is kept.
+    */
+    static final int INDEX_STRIDE = 64;
+
+    /**
+    The number of tiles in each polyform.
+    */
+    final int width;
+
+    /**
+    The pages of bytes, all of them full apart from the last.
+    */
+    final ArrayList<byte[]> pages = new ArrayList<byte[]>();
+
+    /**
+    The page polyforms are added to.
+    */
+    byte[] page;
+
+    /**
+    The position in the last page that the next polyform is written at.
+    */
+    int position;
+
+    /**
+    The number of bytes written to each page but the last.
+    */
+    int[] ends = new int[4];
+
+    /**
+    The page number shifted left by PAGE_BITS, plus the position in the page, of every INDEX_STRIDE-th polyform.
+    */
+    long[] index = new long[16];
+
+    /**
+    The number of polyforms.
+    */
+    int size;
+
+    /**
+    Makes an empty frontier.
+    @param width the number of tiles in each polyform
+    */
+    CompressedFrontier(int width){
+        this.width = width;
+    }
+
+    /**
+    Adds a polyform at the end.
+    @param animal the sorted indices of the tiles of the polyform, of which the first width are used
+    */
+    void add(int[] animal){
+        int needed = 5*width; // a varint of an int takes at most 5 bytes
+        if(page == null){
+            page = new byte[Math.min(PAGE_SIZE, Math.max(256, 4*needed))]; // the first page starts small, so small levels stay small
+            pages.add(page);
+        }
+        else if(position + needed > PAGE_SIZE){
+            if(pages.size() > ends.length)
+                ends = Arrays.copyOf(ends, 2*ends.length);
+            ends[pages.size() - 1] = position;
+            page = new byte[PAGE_SIZE];
+            pages.add(page);
+            position = 0;
+        }
+        else if(position + needed > page.length){
+            page = Arrays.copyOf(page, Math.min(PAGE_SIZE, Math.max(2*page.length, position + needed)));
+            pages.set(pages.size() - 1, page);
+        }
+        if(size % INDEX_STRIDE == 0){
+            if(size/INDEX_STRIDE == index.length)
+                index = Arrays.copyOf(index, 2*index.length);
+            index[size/INDEX_STRIDE] = ((long) (pages.size() - 1) << PAGE_BITS) | position;
+        }
+        int previous = -1;
+        for(int i = 0; i < width; i++){
+            position = writeVarint(page, position, animal[i] - previous - 1);
+            previous = animal[i];
+        }
+        size++;
+    }
+
+    /**
+    Returns the number of polyforms.
+    @return the number of polyforms added
+    */
+    int size(){
+        return size;
+    }
+
+    /**
+    Returns the number of bytes of the pages and index, which is about the heap the frontier uses.
+    @return the bytes used
+    */
+    long bytes(){
+        long bytes = 8L*index.length;
+        for(byte[] bytesOfPage : pages)
+            bytes += bytesOfPage.length;
+        return bytes;
+    }
+
+    /**
+    Returns a reader of the polyforms starting at the given one.
+    @param first the number of the first polyform to read, a multiple of INDEX_STRIDE
+    @return a reader whose next polyform is the given one
+    @throws IllegalArgumentException if first is not a multiple of INDEX_STRIDE
+    */
+    Reader read(int first){
+        if(first % INDEX_STRIDE != 0)
+            throw new IllegalArgumentException("reading can only start at a multiple of " + INDEX_STRIDE);
+        if(first >= size)
+            return new Reader(0, 0);
+        long start = index[first/INDEX_STRIDE];
+        return new Reader((int) (start >>> PAGE_BITS), (int) start & (PAGE_SIZE - 1));
+    }
+
+    /**
+    Writes a non negative int as a varint, with 7 bits in each byte and the high bit set on every byte but the last.
+    @return the position after the varint
+    */
+    private static int writeVarint(byte[] bytes, int position, int value){
+        while((value & ~0x7f) != 0){
+            bytes[position++] = (byte) ((value & 0x7f) | 0x80);
+            value >>>= 7;
+        }
+        bytes[position++] = (byte) value;
+        return position;
+    }
+
+    /**
+    Reads the polyforms of a frontier in order, one at a time.
+    */
+    final class Reader {
+        /**
+        The number of the page being read.
+        */
+        int pageNum;
+
+        /**
+        The position of the next byte in the page.
+        */
+        int position;
+
+        Reader(int pageNum, int position){
+            this.pageNum = pageNum;
+            this.position = position;
+        }
+
+        /**
+        Reads the next polyform, which must not be past the last one.
+        @param animal where the sorted indices of the tiles of the polyform are written
+        */
+        void next(int[] animal){
+            if(position == (pageNum == pages.size() - 1 ? CompressedFrontier.this.position : ends[pageNum])){ // the polyform starts the next page
+                pageNum++;
+                position = 0;
+            }
+            byte[] bytes = pages.get(pageNum);
+            int previous = -1, value, shift;
+            byte b;
+            for(int i = 0; i < width; i++){
+                value = 0;
+                shift = 0;
+                do{
+                    b = bytes[position++];
+                    value |= (b & 0x7f) << shift;
+                    shift += 7;
+                } while(b < 0);
+                previous += value + 1;
+                animal[i] = previous;
+            }
+        }
+    }
+}
@@ -0,0 +1,81 @@
+package megl.polyforms;
+
+/**
+A set of 64 bit polyform keys (see ZobristKeys) that several threads can add to at once.
+The keys are split between many KeySets by their high bits, and each KeySet is locked while a key is added to it,
+so threads only wait for each other when they add to the same one at the same time. With several times as many
+KeySets as threads, that is rare, and each KeySet can still grow as needed.
+*/
+final class ConcurrentKeySet {
+    /**
+    The number of KeySets for each thread that adds keys.
+    */
+    static final int SHARDS_PER_THREAD = 16;
+
+    /**
+    The sets the keys are split between. Each one is locked while it is used.
+    */
+    final KeySet[] shards;
+
+    /**
+    How far a mixed key is shifted right to get the index of its shard.
+    */
+    final int shift;
+
+    /**
+    Makes an empty set.
+    @param threads the number of threads that will add keys at once
+    */
+    ConcurrentKeySet(int threads){
+        int bits = 64 - Long.numberOfLeadingZeros(Math.max(1, (long) threads*SHARDS_PER_THREAD) - 1);
+        this.shards = new KeySet[1 << bits];
+        for(int i = 0; i < shards.length; i++)
+            shards[i] = new KeySet();
+        this.shift = 64 - bits;
+    }
+
+    /**
+    Returns the shard a key belongs in, chosen by the high bits of the key mixed again, since KeySet uses the low bits.
+    */
+    private KeySet shard(long key){
+        return (shards.length == 1 ? shards[0] : shards[(int) ((key*0x9e3779b97f4a7c15L) >>> shift)]);
+    }
+
+    /**
+    Adds a key to the set.
+    @param key the key of a polyform
+    @return true if the key was not already in the set, which is true for only one of several threads adding the same key
+    */
+    boolean add(long key){
+        KeySet shard = shard(key);
+        synchronized(shard){
+            return shard.add(key);
+        }
+    }
+
+    /**
+    Returns true if and only if the key is in the set.
+    @param key the key of a polyform
+    @return true iff the key was added
+    */
+    boolean contains(long key){
+        KeySet shard = shard(key);
+        synchronized(shard){
+            return shard.contains(key);
+        }
+    }
+
+    /**
+    Returns the number of keys in the set. Keys that are being added at the same time may or may not be counted.
+    @return the number of keys
+    */
+    long size(){
+        long size = 0;
+        for(KeySet shard : shards){
+            synchronized(shard){
+                size += shard.size();
+            }
+        }
+        return size;
+    }
+}
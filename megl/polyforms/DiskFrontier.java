@@ -0,0 +1,355 @@
+package megl.polyforms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.Closeable;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.EOFException;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.PriorityQueue;
+
+/**
+One level of a breadth first search of polyforms, kept in files instead of the heap, so the size of a level is only
+limited by the disk (see PolyformFinder.getHoleyest(Tessellation, int, long, File)).
+A polyform with n tiles is written as its n sorted tile indices, so every record of a level has the same width and
+two records are the same polyform if and only if they are equal. Polyforms of the next level are added to a buffer of
+fixed size. When it is full, its records are sorted and written without duplicates as a run, and when the level is finished,
+the runs are merged into one sorted file with no duplicates, at most MERGE_FAN_IN runs at a time.
+The heap used is the buffer, plus a stream buffer for each run being merged.
+*/
+final class DiskFrontier implements Closeable {
+    /**
+    The most runs that are merged at once.
+    */
+    static final int MERGE_FAN_IN = 64;
+
+    /**
+    The number of bytes buffered for each file that is read or written.
+    */
+    static final int STREAM_BUFFER = 1 << 16;
+
+    /**
+    The directory the files of this frontier are made in, which is deleted when it is closed.
+    */
+    final File directory;
+
+    /**
+    The number of bytes that the buffer of records may use.
+    */
+    final long bufferBytes;
+
+    /**
+    The sorted file of the current level, or null before the first level is finished.
+    */
+    File level;
+
+    /**
+    The number of ints in each record of the current level.
+    */
+    int levelWidth;
+
+    /**
+    The number of polyforms in the current level.
+    */
+    long levelSize;
+
+    /**
+    The number of ints in each record of the next level.
+    */
+    int width;
+
+    /**
+    The records of the next level that are not in a run yet, one after another.
+    */
+    int[] records;
+
+    /**
+    The number of records in the buffer.
+    */
+    int count;
+
+    /**
+    The order of the records in the buffer once it is sorted.
+    */
+    int[] order;
+
+    /**
+    Scratch space for sorting order.
+    */
+    int[] sorted;
+
+    /**
+    The runs of the next level.
+    */
+    final ArrayList<File> runs = new ArrayList<File>();
+
+    /**
+    The number of files made so far, for naming new ones.
+    */
+    int files;
+
+    /**
+    Makes an empty frontier with its files in a new directory.
+    @param parent the directory to make the directory of the frontier in
+    @param bufferBytes the number of bytes that the buffer of records may use
+    @throws IOException if the directory can't be made
+    @throws IllegalArgumentException if the buffer can't hold a few records
+    */
+    DiskFrontier(File parent, long bufferBytes) throws IOException {
+        if(bufferBytes < 1024)
+            throw new IllegalArgumentException("the frontier buffer needs at least 1024 bytes");
+        this.directory = Files.createTempDirectory(parent.toPath(), "frontier").toFile();
+        this.bufferBytes = bufferBytes;
+    }
+
+    /**
+    Starts the next level, whose polyforms have the given number of tiles.
+    @param width the number of tiles in each polyform of the next level
+    */
+    void startLevel(int width){
+        this.width = width;
+        int capacity = (int) Math.min(bufferBytes/(4L*(width + 2)), (Integer.MAX_VALUE - 8)/width);
+        records = new int[capacity*width];
+        order = new int[capacity];
+        sorted = new int[capacity];
+        count = 0;
+    }
+
+    /**
+    Adds a polyform to the next level, made of a polyform of the current level and one more tile.
+    @param animal the sorted indices of the tiles of the polyform, of which the first width - 1 are used
+    @param tile the index of the tile to add, which is not in the polyform
+    @throws IOException if the buffer is full and can't be written as a run
+    */
+    void add(int[] animal, int tile) throws IOException {
+        if(count == order.length)
+            spill();
+        int start = count*width, i = 0;
+        while(i < width - 1 && animal[i] < tile)
+            records[start++] = animal[i++];
+        records[start++] = tile;
+        while(i < width - 1)
+            records[start++] = animal[i++];
+        count++;
+    }
+
+    /**
+    Sorts the buffer and writes it as a run, leaving out duplicates.
+    */
+    private void spill() throws IOException {
+        if(count == 0)
+            return;
+        sortBuffer();
+        File run = newFile();
+        try(DataOutputStream out = writer(run)){
+            int previous = -1;
+            for(int i = 0; i < count; i++){
+                if(previous >= 0 && compare(records, order[i]*width, records, previous*width, width) == 0)
+                    continue;
+                previous = order[i];
+                for(int j = previous*width; j < (previous + 1)*width; j++)
+                    out.writeInt(records[j]);
+            }
+        }
+        runs.add(run);
+        count = 0;
+    }
+
+    /**
+    Sorts the order of the records in the buffer by merging ever longer sorted stretches.
+    */
+    private void sortBuffer(){
+        int[] from = order, to = sorted, swap;
+        int left, right, middle, end, i;
+        for(i = 0; i < count; i++)
+            from[i] = i;
+        for(int length = 1; length < count; length *= 2){
+            for(int start = 0; start < count; start += 2*length){
+                middle = Math.min(start + length, count);
+                end = Math.min(start + 2*length, count);
+                left = start;
+                right = middle;
+                for(i = start; i < end; i++){
+                    if(right >= end || (left < middle && compare(records, from[left]*width, records, from[right]*width, width) <= 0))
+                        to[i] = from[left++];
+                    else
+                        to[i] = from[right++];
+                }
+            }
+            swap = from;
+            from = to;
+            to = swap;
+        }
+        order = from;
+        sorted = to;
+    }
+
+    /**
+    Finishes the next level, merging its runs into one sorted file without duplicates, which becomes the current level.
+    @throws IOException if the runs can't be read or merged
+    */
+    void finishLevel() throws IOException {
+        spill();
+        records = null;
+        order = null;
+        sorted = null;
+        ArrayList<File> merged;
+        while(runs.size() > MERGE_FAN_IN){
+            merged = new ArrayList<File>();
+            for(int start = 0; start < runs.size(); start += MERGE_FAN_IN)
+                merged.add(merge(runs.subList(start, Math.min(start + MERGE_FAN_IN, runs.size()))));
+            runs.clear();
+            runs.addAll(merged);
+        }
+        File next = (runs.size() == 1 ? runs.get(0) : merge(runs)); // a single run is already sorted without duplicates
+        runs.clear();
+        if(level != null)
+            level.delete();
+        level = next;
+        levelWidth = width;
+        levelSize = level.length()/(4L*width);
+    }
+
+    /**
+    Merges sorted runs into one, leaving out duplicates, and deletes them.
+    @param parts the runs to merge
+    @return the merged run
+    */
+    private File merge(List<File> parts) throws IOException {
+        File run = newFile();
+        PriorityQueue<Reader> queue = new PriorityQueue<Reader>(Math.max(1, parts.size()),
+                (a, b) -> compare(a.record, 0, b.record, 0, width));
+        int[] previous = new int[width];
+        boolean first = true;
+        try(DataOutputStream out = writer(run)){
+            for(File part : parts){
+                Reader reader = new Reader(part, width);
+                if(reader.next())
+                    queue.add(reader);
+                else
+                    reader.close();
+            }
+            Reader reader;
+            while(!queue.isEmpty()){
+                reader = queue.poll();
+                if(first || compare(reader.record, 0, previous, 0, width) != 0){
+                    for(int i = 0; i < width; i++)
+                        out.writeInt(previous[i] = reader.record[i]);
+                    first = false;
+                }
+                if(reader.next())
+                    queue.add(reader);
+                else
+                    reader.close();
+            }
+        }
+        finally{
+            for(Reader reader : queue)
+                reader.close();
+        }
+        for(File part : parts)
+            part.delete();
+        return run;
+    }
+
+    /**
+    Returns a reader of the polyforms of the current level, in sorted order.
+    @return a reader of the current level
+    @throws IOException if the level can't be read
+    */
+    Reader read() throws IOException {
+        return new Reader(level, levelWidth);
+    }
+
+    /**
+    Returns a new file in the directory of this frontier.
+    */
+    private File newFile(){
+        return new File(directory, "run" + (files++));
+    }
+
+    /**
+    Opens a buffered stream that writes to the given file.
+    */
+    private static DataOutputStream writer(File file) throws IOException {
+        return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), STREAM_BUFFER));
+    }
+
+    /**
+    Compares two records of the same width in the order of their first differing tile index.
+    @return a negative number, zero or a positive number as the first record comes before, is equal to or comes after the second
+    */
+    static int compare(int[] a, int aStart, int[] b, int bStart, int width){
+        for(int i = 0; i < width; i++)
+            if(a[aStart + i] != b[bStart + i])
+                return Integer.compare(a[aStart + i], b[bStart + i]);
+        return 0;
+    }
+
+    /**
+    Deletes every file of the frontier and its directory.
+    */
+    @Override
+    public void close(){
+        File[] left = directory.listFiles();
+        if(left != null)
+            for(File file : left)
+                file.delete();
+        directory.delete();
+    }
+
+    /**
+    Reads the records of a file one at a time into the same array.
+    */
+    static final class Reader implements Closeable {
+        /**
+        The stream the records are read from.
+        */
+        final DataInputStream in;
+
+        /**
+        The last record that was read.
+        */
+        final int[] record;
+
+        /**
+        Opens a file of records.
+        @param file the file to read
+        @param width the number of ints in each record
+        @throws IOException if the file can't be opened
+        */
+        Reader(File file, int width) throws IOException {
+            this.in = new DataInputStream(new BufferedInputStream(new FileInputStream(file), STREAM_BUFFER));
+            this.record = new int[width];
+        }
+
+        /**
+        Reads the next record into record.
+        @return true if there was another record, or false at the end of the file
+        @throws IOException if the file can't be read, or ends in the middle of a record
+        */
+        boolean next() throws IOException {
+            try{
+                record[0] = in.readInt();
+            }
+            catch(EOFException e){
+                return false;
+            }
+            for(int i = 1; i < record.length; i++)
+                record[i] = in.readInt();
+            return true;
+        }
+
+        @Override
+        public void close() throws IOException {
+            in.close();
+        }
+    }
+}
@@ -0,0 +1,238 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+Counts the holes of a polyform from its Euler characteristic as tiles are added and taken back off, in O(p) time per tile.
+The polyform is treated as the closed region made of its tiles, with F faces (its tiles), E edges and V vertices, where
+edges and vertices shared by several of its tiles are counted once. Such a region in the plane has
+V - E + F = (number of components) - (number of holes), so the number of holes is C - V + E - F.
+Components are counted the way the README defines polyforms, so tiles that only meet at a vertex are connected.
+They are tracked with a union-find forest over the vertices that is unioned by size without path compression,
+so every union made by push(int) can be undone by pop().
+Tiles are added and removed in stack order, which is how the enumerators build polyforms (see PolyformEnumerator).
+The count matches Polyform.numHoles as long as no tile of the polyform is in the outermost ring of the tessellation.
+*/
+public class EulerHoleCounter implements HoleEvaluator {
+    /**
+    The vertices, edges and tiles of the tessellation.
+    */
+    final TessellationComplex complex;
+
+    /**
+    How many tiles of the polyform have each vertex as a corner.
+    */
+    final int[] vertexUses;
+
+    /**
+    How many tiles of the polyform have each edge as a side.
+    */
+    final int[] edgeUses;
+
+    /**
+    The parent of each vertex in the union-find forest. Roots are their own parent.
+    */
+    final int[] parent;
+
+    /**
+    The number of vertices under each root.
+    */
+    final int[] treeSize;
+
+    /**
+    The tiles of the polyform, in the order they were added.
+    */
+    int[] stack;
+
+    /**
+    The number of unions made before each tile on the stack was added.
+    */
+    int[] unionsBefore;
+
+    /**
+    The vertices that were attached to another root by union, in order.
+    */
+    int[] unions;
+
+    /**
+    The number of tiles in the polyform.
+    */
+    int faces;
+
+    /**
+    The number of edges of the polyform.
+    */
+    int edges;
+
+    /**
+    The number of vertices of the polyform.
+    */
+    int vertices;
+
+    /**
+    The number of components of the polyform.
+    */
+    int components;
+
+    /**
+    The number of entries of unions that are used.
+    */
+    int unionCount;
+
+    /**
+    Starts counting holes of an empty polyform.
+    @param complex the vertices, edges and tiles of the tessellation
+    */
+    public EulerHoleCounter(TessellationComplex complex){
+        this.complex = complex;
+        this.vertexUses = new int[complex.numVertices()];
+        this.edgeUses = new int[complex.numEdges()];
+        this.parent = new int[complex.numVertices()];
+        this.treeSize = new int[complex.numVertices()];
+        for(int v = 0; v < parent.length; v++){
+            parent[v] = v;
+            treeSize[v] = 1;
+        }
+        this.stack = new int[16];
+        this.unionsBefore = new int[16];
+        this.unions = new int[16];
+    }
+
+    /**
+    Counts the holes of the given polyform from scratch.
+    @param complex the vertices, edges and tiles of the tessellation
+    @param animal the indices of the tiles of the polyform, without duplicates
+    @return the number of holes in the polyform
+    */
+    public static int numHoles(TessellationComplex complex, int[] animal){
+        EulerHoleCounter counter = new EulerHoleCounter(complex);
+        for(int id : animal)
+            counter.push(id);
+        return counter.holes();
+    }
+
+    /**
+    Adds a tile to the polyform.
+    @param id the index of a tile that is not already in the polyform
+    */
+    public void push(int id){
+        int p = complex.p;
+        if(faces == stack.length){
+            stack = Arrays.copyOf(stack, 2*faces);
+            unionsBefore = Arrays.copyOf(unionsBefore, 2*faces);
+        }
+        stack[faces] = id;
+        unionsBefore[faces] = unionCount;
+        faces++;
+
+        int v, e;
+        for(int i = 0; i < p; i++){
+            e = complex.tileEdges[id*p + i];
+            if(edgeUses[e]++ == 0)
+                edges++;
+            v = complex.tileVertices[id*p + i];
+            if(vertexUses[v]++ == 0){
+                vertices++;
+                components++; // a new vertex starts out alone
+            }
+        }
+        int first = find(complex.tileVertices[id*p]);
+        for(int i = 1; i < p; i++)
+            first = union(first, find(complex.tileVertices[id*p + i]));
+    }
+
+    /**
+    Takes the most recently added tile back out of the polyform.
+    @return the index of the tile that was removed
+    @throws IllegalStateException if the polyform is empty
+    */
+    public int pop(){
+        if(faces == 0)
+            throw new IllegalStateException("there are no tiles to remove");
+        int p = complex.p;
+        faces--;
+        int id = stack[faces];
+        int child, root;
+        while(unionCount > unionsBefore[faces]){
+            child = unions[--unionCount];
+            root = parent[child];
+            treeSize[root] -= treeSize[child];
+            parent[child] = child;
+            components++;
+        }
+        int v, e;
+        for(int i = 0; i < p; i++){
+            e = complex.tileEdges[id*p + i];
+            if(--edgeUses[e] == 0)
+                edges--;
+            v = complex.tileVertices[id*p + i];
+            if(--vertexUses[v] == 0){ // unions with this vertex were all made by this tile, so it is alone again
+                vertices--;
+                components--;
+            }
+        }
+        return id;
+    }
+
+    /**
+    Returns the root of the given vertex.
+    */
+    private int find(int v){
+        while(parent[v] != v)
+            v = parent[v];
+        return v;
+    }
+
+    /**
+    Attaches the smaller of two roots to the larger one and logs it, unless they are the same.
+    @return the root of the union
+    */
+    private int union(int a, int b){
+        if(a == b)
+            return a;
+        if(treeSize[a] < treeSize[b]){
+            int temp = a;
+            a = b;
+            b = temp;
+        }
+        parent[b] = a;
+        treeSize[a] += treeSize[b];
+        if(unionCount == unions.length)
+            unions = Arrays.copyOf(unions, 2*unionCount);
+        unions[unionCount++] = b;
+        components--;
+        return a;
+    }
+
+    /**
+    Returns the number of holes in the polyform.
+    @return C - V + E - F
+    */
+    public int holes(){
+        return components - vertices + edges - faces;
+    }
+
+    /**
+    Returns the number of edges that are sides of two tiles of the polyform.
+    @return pF - E, since every tile has p sides and shared edges are counted once in E
+    */
+    public int sharedEdges(){
+        return complex.p*faces - edges;
+    }
+
+    /**
+    Returns the number of components of the polyform, where tiles that meet at a vertex are connected.
+    @return the number of components
+    */
+    public int components(){
+        return components;
+    }
+
+    /**
+    Returns the number of tiles in the polyform.
+    @return the number of tiles
+    */
+    public int size(){
+        return faces;
+    }
+}
@@ -0,0 +1,89 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+Counts the holes of a polyform with HoleCounter each time they are asked for, keeping its tiles in a stack.
+Holes are counted the same way as Polyform.numHoles, including next to the edge of the tessellation.
+*/
+public class FloodHoleEvaluator implements HoleEvaluator {
+    /**
+    The compact tessellation containing the polyform.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The tiles of the polyform, in the order they were added.
+    */
+    int[] stack;
+
+    /**
+    The number of shared edges of the polyform before each tile on the stack was added, and after the last one.
+    */
+    int[] shared;
+
+    /**
+    The number of tiles in the polyform.
+    */
+    int size;
+
+    /**
+    Starts counting holes of an empty polyform.
+    @param plane the compact tessellation containing the polyform
+    */
+    public FloodHoleEvaluator(CompactTessellation plane){
+        this.plane = plane;
+        this.stack = new int[16];
+        this.shared = new int[17];
+    }
+
+    /**
+    Adds a tile to the polyform.
+    @param id the index of a tile that is not already in the polyform
+    */
+    public void push(int id){
+        if(size == stack.length){
+            stack = Arrays.copyOf(stack, 2*size);
+            shared = Arrays.copyOf(shared, 2*size + 1);
+        }
+        int count = shared[size];
+        int next;
+        for(int j = 0; j < plane.degree(id); j++){ // the polyform is small, so it is searched instead of marked
+            next = plane.neighbor(id, j);
+            for(int i = 0; i < size; i++)
+                if(stack[i] == next){
+                    count++;
+                    break;
+                }
+        }
+        stack[size++] = id;
+        shared[size] = count;
+    }
+
+    /**
+    Takes the most recently added tile back out of the polyform.
+    @return the index of the tile that was removed
+    @throws IllegalStateException if the polyform is empty
+    */
+    public int pop(){
+        if(size == 0)
+            throw new IllegalStateException("there are no tiles to remove");
+        return stack[--size];
+    }
+
+    /**
+    Returns the number of holes in the polyform, flooding the tiles around it.
+    @return the number of holes
+    */
+    public int holes(){
+        return HoleCounter.numHoles(plane, stack, size);
+    }
+
+    /**
+    Returns the number of edges that are sides of two tiles of the polyform.
+    @return the number of shared edges
+    */
+    public int sharedEdges(){
+        return shared[size];
+    }
+}
@@ -0,0 +1,344 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+Counts holes and checks connectivity without changing anything about the tessellation, so any number of threads
+can examine polyforms in the same tessellation at once.
+Every thread gets its own scratch space, which is kept between calls instead of being allocated each time:
+    marks has one int per tile. Instead of clearing it, each call takes new stamp values, and a tile counts as
+        marked only if its entry equals a stamp of the current call.
+    queue holds the tiles waiting to be visited by a flood fill or search.
+The scratch space grows to fit the largest tessellation the thread has examined.
+Holes can only be inside the rings the polyform spans, so numHoles only floods from the tiles next to the animal and
+stops as soon as a flood leaves those rings (see closed). getHoles floods every tile outside the animal.
+A lazy Tessellation may still grow during the Tessellation based methods, which is not thread safe, so tessellations
+shared by several threads should have every ring they need made in advance.
+*/
+public final class HoleCounter {
+    /**
+    The scratch space of each thread.
+    */
+    private static final ThreadLocal<HoleCounter> scratch = ThreadLocal.withInitial(HoleCounter::new);
+
+    /**
+    The stamp each tile was last marked with.
+    */
+    private int[] marks = new int[0];
+
+    /**
+    The most recently used stamp.
+    */
+    private int stamp = 0;
+
+    /**
+    The tiles that are waiting to be visited.
+    */
+    private int[] queue = new int[0];
+
+    /**
+    Scratch space is only made through scratch.
+    */
+    private HoleCounter(){
+    }
+
+    /**
+    Returns the scratch space of the current thread, big enough for the given tessellation, with the given number of unused stamps.
+    */
+    private static HoleCounter forPlane(CompactTessellation plane, int stamps){
+        HoleCounter counter = scratch.get();
+        if(counter.marks.length < plane.size()){
+            counter.marks = new int[plane.size()];
+            counter.queue = new int[plane.size()];
+            counter.stamp = 0;
+        }
+        if(counter.stamp > Integer.MAX_VALUE - stamps){ // every old stamp would be reused, so the marks are cleared
+            Arrays.fill(counter.marks, 0);
+            counter.stamp = 0;
+        }
+        return counter;
+    }
+
+    /**
+    Counts how many unique holes are in the given polyform. A hole is only counted if none of its tiles are
+    on the edge of the tessellation.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    @return the number of holes in the polyform
+    */
+    public static int numHoles(CompactTessellation plane, int[] animal){
+        if(animal == null)
+            return 0;
+        return numHoles(plane, animal, animal.length);
+    }
+
+    /**
+    Same as numHoles(CompactTessellation, int[]), but only the first tiles of the array are part of the polyform.
+    @param plane the compact tessellation that is being examined
+    @param animal an array starting with the indices of the tiles composing the polyform
+    @param length the number of tiles in the polyform
+    @return the number of holes in the polyform
+    */
+    static int numHoles(CompactTessellation plane, int[] animal, int length){
+        if(length == 0)
+            return 0;
+        return forPlane(plane, plane.p*length + 1).window(plane, animal, length);
+    }
+
+    /**
+    Returns an arraylist containing the indices of the tiles in each hole. Each element in the arraylist is a distinct hole.
+    A hole is only counted if none of its tiles are on the edge of the tessellation.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    @return the collection of holes in the polyform
+    */
+    public static ArrayList<int[]> getHoles(CompactTessellation plane, int[] animal){
+        if(animal == null)
+            return null;
+        ArrayList<int[]> holes = new ArrayList<int[]>();
+        forPlane(plane, 1).flood(plane, animal, holes);
+        return holes;
+    }
+
+    /**
+    Returns true if and only if every tile in the given array can be reached from the first one
+    by only passing through tiles in the array.
+    @param plane the compact tessellation that is being searched
+    @param animal the indices of the tiles that are being checked for connectivity
+    @return true if and only if the polyform is connected, including if the polyform is empty
+    */
+    public static boolean isConnected(CompactTessellation plane, int[] animal){
+        if(animal == null || animal.length == 0)
+            return true;
+        return forPlane(plane, 2).search(plane, animal);
+    }
+
+    /**
+    Same as numHoles(CompactTessellation, int[]), but for polyforms in a Tessellation.
+    Tiles of the animal that are not in the tessellation are ignored.
+    @param plane the tessellation that is being examined
+    @param animal the absolute indices of the tiles composing the polyform
+    @return the number of holes in the polyform
+    */
+    public static int numHoles(Tessellation plane, TileSet animal){
+        if(animal == null)
+            return 0;
+        CompactTessellation compact = plane.getCompact();
+        return numHoles(compact, indicesOf(compact, animal));
+    }
+
+    /**
+    Same as getHoles(CompactTessellation, int[]), but for polyforms in a Tessellation.
+    Tiles of the animal that are not in the tessellation are ignored.
+    @param plane the tessellation that is being examined
+    @param animal the absolute indices of the tiles composing the polyform
+    @return the absolute indices of the tiles of each hole in the polyform
+    */
+    public static ArrayList<TileSet> getHoles(Tessellation plane, TileSet animal){
+        if(animal == null)
+            return null;
+        CompactTessellation compact = plane.getCompact();
+        ArrayList<TileSet> holes = new ArrayList<TileSet>();
+        for(int[] ids : getHoles(compact, indicesOf(compact, animal)))
+            holes.add(new TileSet(ids));
+        return holes;
+    }
+
+    /**
+    Same as isConnected(CompactTessellation, int[]), but for polyforms in a Tessellation.
+    Tiles of the animal that are not in the tessellation are ignored.
+    @param plane the tessellation that is being searched
+    @param animal the absolute indices of the tiles that are being checked for connectivity
+    @return true if and only if the polyform is connected, including if the polyform is empty
+    */
+    public static boolean isConnected(Tessellation plane, TileSet animal){
+        if(animal == null)
+            return true;
+        CompactTessellation compact = plane.getCompact();
+        return isConnected(compact, indicesOf(compact, animal));
+    }
+
+    /**
+    Returns the index of each tile of the animal that is in the compact tessellation, in ascending order.
+    */
+    private static int[] indicesOf(CompactTessellation plane, TileSet animal){
+        int[] ids = animal.toArray();
+        int count = ids.length;
+        while(count > 0 && ids[count-1] >= plane.size())
+            count--;
+        return (count == ids.length ? ids : Arrays.copyOf(ids, count));
+    }
+
+    /**
+    Floods every tile outside the animal, one component at a time, and counts the components that are holes.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    @param holes if not null, the tiles of each hole are added to it
+    @return the number of holes
+    */
+    private int flood(CompactTessellation plane, int[] animal, ArrayList<int[]> holes){
+        int reached = ++stamp; // animal tiles and tiles that have been flooded
+        for(int id : animal)
+            marks[id] = reached;
+
+        int count = 0;
+        int size, tile, next;
+        boolean falseHole;
+        for(int start = plane.size()-1; start >= 0; start--){
+            if(marks[start] == reached)
+                continue;
+            marks[start] = reached;
+            queue[0] = start;
+            size = 1;
+            falseHole = false;
+            for(int i = 0; i < size; i++){ // the queue doubles as the list of the component's tiles
+                tile = queue[i];
+                if(plane.isBoundary(tile))
+                    falseHole = true;
+                for(int j = 0; j < plane.degree(tile); j++){
+                    next = plane.neighbor(tile, j);
+                    if(marks[next] != reached){
+                        marks[next] = reached;
+                        queue[size++] = next;
+                    }
+                }
+            }
+            if(!falseHole){
+                count++;
+                if(holes != null)
+                    holes.add(Arrays.copyOf(queue, size));
+            }
+        }
+        return count;
+    }
+
+    /**
+    Counts the holes of the animal by flooding from each tile next to it, only looking at the rings the animal spans
+    and the ring inside them.
+    A tile in a ring past the animal's outermost ring is connected to the edge of the tessellation by the rings around it,
+    none of which have animal tiles, so a flood that reaches one has found an outer component.
+    Likewise, the tiles of the ring just inside the animal's innermost ring are all joined through the rings inside them,
+    so a flood that reaches one of them takes in that whole ring and none of the rings further in.
+    Every hole is next to the animal, so every hole is flooded, and fully, since only floods that escape are cut short.
+    @param plane the compact tessellation that is being examined
+    @param animal an array starting with the indices of the tiles composing the polyform
+    @param length the number of tiles in the polyform, at least one
+    @return the number of holes
+    */
+    private int window(CompactTessellation plane, int[] animal, int length){
+        int minRing = plane.rings;
+        int maxRing = 0;
+        int ring;
+        for(int i = 0; i < length; i++){
+            ring = plane.getRingNum(animal[i]);
+            minRing = Math.min(minRing, ring);
+            maxRing = Math.max(maxRing, ring);
+        }
+        int innerStart = (minRing > 0 ? plane.ringOffsets[minRing-1] : 0);
+        int innerEnd = plane.ringOffsets[minRing];
+        int outerStart = plane.ringOffsets[maxRing+1];
+
+        int inAnimal = ++stamp; // floods in this call get higher stamps
+        for(int i = 0; i < length; i++)
+            marks[animal[i]] = inAnimal;
+        int count = 0;
+        int id, start;
+        for(int i = 0; i < length; i++){
+            id = animal[i];
+            for(int j = 0; j < plane.degree(id); j++){
+                start = plane.neighbor(id, j);
+                if(start >= outerStart || marks[start] >= inAnimal)
+                    continue;
+                if(closed(plane, start, ++stamp, inAnimal, innerStart, innerEnd, outerStart))
+                    count++;
+            }
+        }
+        return count;
+    }
+
+    /**
+    Floods the component of the complement containing the start tile, giving its tiles the flood's stamp,
+    and stops as soon as the component turns out to be outer.
+    A flood that runs into a tile of an earlier flood has also escaped, since floods that did not escape took in
+    their whole component.
+    @param plane the compact tessellation that is being examined
+    @param start a tile outside the animal that has not been flooded
+    @param flood the stamp of this flood
+    @param inAnimal the stamp of the animal tiles, which is lower than the stamp of every flood
+    @param innerStart the first tile of the ring inside the animal's innermost ring
+    @param innerEnd the first tile after that ring, which equals innerStart if the animal has a tile in ring 0
+    @param outerStart the first tile past the animal's outermost ring
+    @return true iff the component is a hole
+    */
+    private boolean closed(CompactTessellation plane, int start, int flood, int inAnimal, int innerStart, int innerEnd, int outerStart){
+        marks[start] = flood;
+        queue[0] = start;
+        int size = 1;
+        boolean innerRing = false;
+        int tile, next;
+        for(int i = 0; i < size; i++){
+            tile = queue[i];
+            if(plane.isBoundary(tile))
+                return false;
+            if(!innerRing && tile < innerEnd){
+                innerRing = true;
+                for(int t = innerStart; t < innerEnd; t++){
+                    if(marks[t] == flood)
+                        continue;
+                    if(marks[t] > inAnimal)
+                        return false;
+                    marks[t] = flood;
+                    queue[size++] = t;
+                }
+            }
+            for(int j = 0; j < plane.degree(tile); j++){
+                next = plane.neighbor(tile, j);
+                if(next >= outerStart)
+                    return false;
+                if(next < innerStart || marks[next] == flood || marks[next] == inAnimal)
+                    continue;
+                if(marks[next] > inAnimal)
+                    return false;
+                marks[next] = flood;
+                queue[size++] = next;
+            }
+        }
+        return true;
+    }
+
+    /**
+    Searches the animal from its first tile and returns true if every tile of it was reached.
+    @param plane the compact tessellation that is being searched
+    @param animal the indices of the tiles of the animal, with at least one tile
+    @return true iff the animal is connected
+    */
+    private boolean search(CompactTessellation plane, int[] animal){
+        int inAnimal = ++stamp;
+        int visited = ++stamp;
+        int expected = 0;
+        for(int id : animal)
+            if(marks[id] != inAnimal){
+                marks[id] = inAnimal;
+                expected++;
+            }
+
+        int top = 0;
+        int reached = 1;
+        int tile, next;
+        queue[top++] = animal[0];
+        marks[animal[0]] = visited;
+        while(top > 0){
+            tile = queue[--top];
+            for(int i = 0; i < plane.degree(tile); i++){
+                next = plane.neighbor(tile, i);
+                if(marks[next] == inAnimal){
+                    marks[next] = visited;
+                    queue[top++] = next;
+                    reached++;
+                }
+            }
+        }
+        return reached == expected;
+    }
+}
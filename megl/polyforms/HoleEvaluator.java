@@ -0,0 +1,34 @@
+package megl.polyforms;
+
+/**
+Counts the holes of a polyform whose tiles are added and taken back off in stack order, which is how
+PolyformEnumerator builds polyforms.
+EulerHoleCounter updates its count in O(p) time per tile but needs the polyform to stay out of the outermost ring,
+while FloodHoleEvaluator floods the tiles around the polyform each time it is asked and works anywhere.
+*/
+public interface HoleEvaluator {
+    /**
+    Adds a tile to the polyform.
+    @param id the index of a tile that is not already in the polyform
+    */
+    void push(int id);
+
+    /**
+    Takes the most recently added tile back out of the polyform.
+    @return the index of the tile that was removed
+    @throws IllegalStateException if the polyform is empty
+    */
+    int pop();
+
+    /**
+    Returns the number of holes in the polyform.
+    @return the number of holes
+    */
+    int holes();
+
+    /**
+    Returns the number of edges that are sides of two tiles of the polyform.
+    @return the number of shared edges
+    */
+    int sharedEdges();
+}
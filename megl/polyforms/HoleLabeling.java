@@ -0,0 +1,281 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+Labels every tile outside a polyform with the component of the complement it is in, in a single sweep over the tiles.
+Each tile is visited by exactly one flood fill, and a component is marked as outer once, as soon as any of its tiles is
+found on the edge of the tessellation. Every other component is a hole.
+Holes are described by their label, area and first tile, and the tiles of a hole are only listed when asked for.
+Components are numbered in the order they are found, starting from the last tile of the tessellation and going down,
+which is the same order Polyform.getHoles lists holes in.
+*/
+public class HoleLabeling {
+    /**
+    The component of each tile, or -1 for tiles of the animal.
+    */
+    final int[] labels;
+
+    /**
+    The number of tiles in each component.
+    */
+    final int[] areas;
+
+    /**
+    The index of the tile each component was first found from, which is its tile with the highest index.
+    */
+    final int[] firstTiles;
+
+    /**
+    Whether each component touches the edge of the tessellation.
+    */
+    final boolean[] outer;
+
+    /**
+    The number of components outside the animal.
+    */
+    final int components;
+
+    /**
+    The number of components that are holes.
+    */
+    final int holes;
+
+    /**
+    Labels the tiles outside the given polyform in a compact tessellation.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    */
+    public HoleLabeling(CompactTessellation plane, int[] animal){
+        int n = plane.size();
+        labels = new int[n];
+        Arrays.fill(labels, -2); // not labeled yet
+        for(int id : animal)
+            labels[id] = -1;
+
+        int[] queue = new int[n];
+        int[] area = new int[16];
+        int[] first = new int[16];
+        boolean[] edge = new boolean[16];
+        int count = 0;
+        int holeCount = 0;
+        int size, tile, next;
+        for(int start = n-1; start >= 0; start--){
+            if(labels[start] != -2)
+                continue;
+            if(count == area.length){
+                area = Arrays.copyOf(area, 2*count);
+                first = Arrays.copyOf(first, 2*count);
+                edge = Arrays.copyOf(edge, 2*count);
+            }
+            labels[start] = count;
+            queue[0] = start;
+            size = 1;
+            for(int i = 0; i < size; i++){
+                tile = queue[i];
+                if(!edge[count] && plane.isBoundary(tile))
+                    edge[count] = true;
+                for(int j = 0; j < plane.degree(tile); j++){
+                    next = plane.neighbor(tile, j);
+                    if(labels[next] == -2){
+                        labels[next] = count;
+                        queue[size++] = next;
+                    }
+                }
+            }
+            area[count] = size;
+            first[count] = start;
+            if(!edge[count])
+                holeCount++;
+            count++;
+        }
+        components = count;
+        holes = holeCount;
+        areas = Arrays.copyOf(area, count);
+        firstTiles = Arrays.copyOf(first, count);
+        outer = Arrays.copyOf(edge, count);
+    }
+
+    /**
+    Labels the tiles of a tessellation that do not have Type ANIMAL.
+    The list must hold every tile of some number of rings in order, like Tessellation.tessellation, so that a tile's
+    position in it is its absolute index.
+    @param tiles the Tiles composing the tessellation
+    */
+    public HoleLabeling(ArrayList<Tile> tiles){
+        int n = tiles.size();
+        int rings = (n == 0 ? 0 : tiles.get(n-1).ringNum);
+        int[] ringOffsets = new int[rings + 2];
+        for(Tile tile : tiles)
+            ringOffsets[tile.ringNum + 1]++;
+        for(int r = 0; r <= rings; r++)
+            ringOffsets[r+1] += ringOffsets[r];
+
+        labels = new int[n];
+        for(int id = 0; id < n; id++)
+            labels[id] = (tiles.get(id).type == Type.ANIMAL ? -1 : -2);
+
+        int[] stack = new int[n];
+        int[] area = new int[16];
+        int[] first = new int[16];
+        boolean[] edge = new boolean[16];
+        int count = 0;
+        int holeCount = 0;
+        int top, size, id;
+        Tile tile;
+        for(int start = n-1; start >= 0; start--){
+            if(labels[start] != -2)
+                continue;
+            if(count == area.length){
+                area = Arrays.copyOf(area, 2*count);
+                first = Arrays.copyOf(first, 2*count);
+                edge = Arrays.copyOf(edge, 2*count);
+            }
+            labels[start] = count;
+            stack[0] = start;
+            top = 1;
+            size = 1;
+            while(top > 0){
+                tile = tiles.get(stack[--top]);
+                for(Tile next : tile.adjacent){
+                    if(next == null){
+                        edge[count] = true;
+                        continue;
+                    }
+                    id = ringOffsets[next.ringNum] + next.ringPos;
+                    if(labels[id] == -2){
+                        labels[id] = count;
+                        stack[top++] = id;
+                        size++;
+                    }
+                }
+            }
+            area[count] = size;
+            first[count] = start;
+            if(!edge[count])
+                holeCount++;
+            count++;
+        }
+        components = count;
+        holes = holeCount;
+        areas = Arrays.copyOf(area, count);
+        firstTiles = Arrays.copyOf(first, count);
+        outer = Arrays.copyOf(edge, count);
+    }
+
+    /**
+    Returns the number of holes in the polyform.
+    @return the number of components outside the animal that do not touch the edge of the tessellation
+    */
+    public int numHoles(){
+        return holes;
+    }
+
+    /**
+    Returns the number of components outside the animal, including the ones on the edge of the tessellation.
+    @return the number of components of the complement
+    */
+    public int numComponents(){
+        return components;
+    }
+
+    /**
+    Returns the component a tile is in.
+    @param id the index of a tile
+    @return the label of the tile's component, or -1 if the tile is part of the animal
+    */
+    public int getLabel(int id){
+        return labels[id];
+    }
+
+    /**
+    Returns true if and only if the component with the given label is a hole.
+    @param label the label of a component
+    @return true iff no tile of the component is on the edge of the tessellation
+    */
+    public boolean isHole(int label){
+        return !outer[label];
+    }
+
+    /**
+    Returns a description of every hole, in the order they were found.
+    @return the label, area and first tile of each hole
+    */
+    public ArrayList<Hole> getHoles(){
+        ArrayList<Hole> list = new ArrayList<Hole>(holes);
+        for(int label = 0; label < components; label++)
+            if(!outer[label])
+                list.add(new Hole(label, areas[label], firstTiles[label]));
+        return list;
+    }
+
+    /**
+    Returns the indices of the tiles in a component. Takes time proportional to the size of the tessellation.
+    @param label the label of a component
+    @return the indices of its tiles, in ascending order
+    */
+    public int[] getTiles(int label){
+        int[] tiles = new int[areas[label]];
+        int count = 0;
+        for(int id = 0; id < labels.length && count < tiles.length; id++)
+            if(labels[id] == label)
+                tiles[count++] = id;
+        return tiles;
+    }
+
+    /**
+    Describes one hole without listing its tiles.
+    */
+    public static class Hole {
+        /**
+        The label of the hole's component.
+        */
+        final int id;
+
+        /**
+        The number of tiles in the hole.
+        */
+        final int area;
+
+        /**
+        The index of the hole's tile with the highest index.
+        */
+        final int firstTile;
+
+        Hole(int id, int area, int firstTile){
+            this.id = id;
+            this.area = area;
+            this.firstTile = firstTile;
+        }
+
+        /**
+        Returns the label of the hole, which can be given to HoleLabeling.getTiles(int).
+        @return the label of the hole's component
+        */
+        public int getId(){
+            return id;
+        }
+
+        /**
+        Returns the area of the hole.
+        @return the number of tiles in the hole
+        */
+        public int getArea(){
+            return area;
+        }
+
+        /**
+        Returns the first tile of the hole found by the sweep.
+        @return the index of the hole's tile with the highest index
+        */
+        public int getFirstTile(){
+            return firstTile;
+        }
+
+        @Override
+        public String toString(){
+            return String.format("hole %d: %d tiles from %d", id, area, firstTile);
+        }
+    }
+}
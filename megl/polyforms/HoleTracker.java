@@ -0,0 +1,671 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+
+/**
+Keeps track of the holes and connectivity of a polyform in a compact tessellation while tiles are added and removed one at a time,
+without looking at the whole tessellation again after each change.
+The tiles of the animal and the tiles outside of it are each split into connected components, which are tracked the same way:
+    Each tile has a label, and labels form a union-find forest whose roots stand for the components.
+        Each root knows how many tiles its component has and how many of them are on the edge of the tessellation.
+    When a tile joins one side, the components of its neighbors on that side are unioned together with it.
+        Union is by size without path compression, so the unions made by an addition can be rolled back exactly by undo().
+    When a tile leaves one side, its component may split. A breadth first search is started from each of its neighbors
+        on that side, and the searches take turns visiting one tile each. Searches that meet are merged, and once at most
+        one merged search is still going, every finished one has found a whole piece, which gets a new label.
+        The work is proportional to the sizes of the pieces that split off, never to the size of the tessellation.
+A component outside the animal is a hole if and only if none of its tiles are on the edge of the tessellation, so the
+animal must not contain edge tiles. Tiles in the outermost ring can't be added; make a new tracker with a bigger tessellation.
+*/
+public class HoleTracker {
+    /**
+    The compact tessellation the polyform is in.
+    */
+    final CompactTessellation plane;
+
+    /**
+    Whether each tile is part of the animal.
+    */
+    final boolean[] inAnimal;
+
+    /**
+    The number of tiles in the animal.
+    */
+    int tiles;
+
+    /**
+    The indices of the tiles of the animal in no order, of which the first tiles are used.
+    */
+    int[] members;
+
+    /**
+    The position of each tile of the animal in members.
+    */
+    final int[] memberPos;
+
+    /**
+    The components of the animal.
+    */
+    final Partition animal;
+
+    /**
+    The components of the tiles outside the animal.
+    */
+    final Partition complement;
+
+    /**
+    The tiles added since the last removal, in order, so they can be undone.
+    */
+    int[] added;
+
+    /**
+    The size of the animal's union log before each tile in added joined the animal.
+    */
+    int[] logSizes;
+
+    /**
+    How many entries of added and logSizes are used.
+    */
+    int undoable;
+
+    /**
+    Which search of the current split owns each tile, as a stamp value. See Partition.leave(int).
+    */
+    int[] owner;
+
+    /**
+    The stamp used for the most recent split.
+    */
+    int stamp;
+
+    /**
+    Tracks the polyform with the given tiles.
+    @param plane the compact tessellation the polyform is in
+    @param animal the indices of the tiles of the polyform
+    @throws IllegalArgumentException if a tile of the animal is on the edge of the tessellation
+    */
+    public HoleTracker(CompactTessellation plane, int[] animal){
+        this.plane = plane;
+        this.inAnimal = new boolean[plane.size()];
+        this.members = new int[Math.max(16, animal.length)];
+        this.memberPos = new int[plane.size()];
+        for(int id : animal){
+            if(plane.isBoundary(id))
+                throw new IllegalArgumentException("tile " + id + " is on the edge of the tessellation");
+            if(!inAnimal[id])
+                enter(id);
+        }
+        this.animal = new Partition(true);
+        this.complement = new Partition(false);
+        this.owner = new int[plane.size()];
+        this.added = new int[16];
+        this.logSizes = new int[16];
+        label();
+    }
+
+    /**
+    Labels every component of both sides from scratch, discarding every old label and the undo history.
+    */
+    private void label(){
+        animal.reset();
+        complement.reset();
+        undoable = 0;
+        int[] queue = new int[plane.size()];
+        int size, tile, next, root;
+        Partition side;
+        for(int start = 0; start < plane.size(); start++){
+            side = (inAnimal[start] ? animal : complement);
+            if(side.label[start] >= 0)
+                continue;
+            root = side.newLabel();
+            side.label[start] = root;
+            queue[0] = start;
+            size = 1;
+            for(int i = 0; i < size; i++){
+                tile = queue[i];
+                side.size[root]++;
+                if(plane.isBoundary(tile))
+                    side.boundary[root]++;
+                for(int j = 0; j < plane.degree(tile); j++){
+                    next = plane.neighbor(tile, j);
+                    if(inAnimal[next] == side.animalSide && side.label[next] < 0){
+                        side.label[next] = root;
+                        queue[size++] = next;
+                    }
+                }
+            }
+            side.remember(root);
+        }
+    }
+
+    /**
+    Adds a tile to the polyform. It can be taken back out with undo() until a tile is removed.
+    @param id the index of the tile
+    @return true iff the tile was not already part of the polyform
+    @throws IllegalArgumentException if the tile is on the edge of the tessellation
+    */
+    public boolean add(int id){
+        if(inAnimal[id])
+            return false;
+        if(plane.isBoundary(id))
+            throw new IllegalArgumentException("tile " + id + " is on the edge of the tessellation");
+        if(undoable == added.length){
+            added = Arrays.copyOf(added, 2*added.length);
+            logSizes = Arrays.copyOf(logSizes, 2*logSizes.length);
+        }
+        added[undoable] = id;
+        logSizes[undoable++] = animal.logSize;
+
+        enter(id);
+        complement.leave(id);
+        animal.join(id, true);
+        return true;
+    }
+
+    /**
+    Removes a tile from the polyform. Clears the history used by undo().
+    @param id the index of the tile
+    @return true iff the tile was part of the polyform
+    */
+    public boolean remove(int id){
+        if(!inAnimal[id])
+            return false;
+        undoable = 0;
+        animal.logSize = 0;
+        exit(id);
+        animal.leave(id);
+        complement.join(id, false);
+        compactIfNeeded();
+        return true;
+    }
+
+    /**
+    Adds the tile if it is not part of the polyform, and removes it otherwise.
+    @param id the index of the tile
+    @return true iff the tile is part of the polyform afterwards
+    */
+    public boolean toggle(int id){
+        if(inAnimal[id]){
+            remove(id);
+            return false;
+        }
+        add(id);
+        return true;
+    }
+
+    /**
+    Takes back the most recent addition that has not been undone, if no tile has been removed since.
+    Rolls back the unions made by the addition instead of searching the animal again.
+    @return the index of the tile that was taken back out, or -1 if there is nothing to undo
+    */
+    public int undo(){
+        if(undoable == 0)
+            return -1;
+        int id = added[--undoable];
+        exit(id);
+        animal.rollback(id, logSizes[undoable]);
+        complement.join(id, false);
+        if(undoable == 0)
+            compactIfNeeded();
+        return id;
+    }
+
+    /**
+    Marks a tile as part of the animal and puts it at the end of members.
+    */
+    private void enter(int id){
+        if(tiles == members.length)
+            members = Arrays.copyOf(members, 2*tiles);
+        inAnimal[id] = true;
+        memberPos[id] = tiles;
+        members[tiles++] = id;
+    }
+
+    /**
+    Marks a tile as not part of the animal and moves the last tile of members into its place.
+    */
+    private void exit(int id){
+        inAnimal[id] = false;
+        int last = members[--tiles];
+        members[memberPos[id]] = last;
+        memberPos[last] = memberPos[id];
+    }
+
+    /**
+    Relabels everything once old labels that no tile uses anymore start to outnumber the tiles,
+    which keeps the label arrays from growing without bound.
+    */
+    private void compactIfNeeded(){
+        if(animal.labels + complement.labels > 2*plane.size() + 1024)
+            label();
+    }
+
+    /**
+    Returns the number of holes in the polyform.
+    @return the number of components outside the animal that do not touch the edge of the tessellation
+    */
+    public int numHoles(){
+        return complement.closed;
+    }
+
+    /**
+    Returns true if and only if the animal is connected, including if it is empty.
+    @return true iff the animal has at most one component
+    */
+    public boolean isConnected(){
+        return animal.components <= 1;
+    }
+
+    /**
+    Returns the number of components of the animal.
+    @return the number of pieces the animal is in
+    */
+    public int numComponents(){
+        return animal.components;
+    }
+
+    /**
+    Returns true if and only if the tile is part of the polyform.
+    @param id the index of a tile
+    @return true iff the tile is in the animal
+    */
+    public boolean contains(int id){
+        return inAnimal[id];
+    }
+
+    /**
+    Returns the number of tiles in the polyform.
+    @return the number of tiles in the animal
+    */
+    public int size(){
+        return tiles;
+    }
+
+    /**
+    Returns the compact tessellation that the polyform is tracked in.
+    @return the tessellation given to the constructor
+    */
+    public CompactTessellation getPlane(){
+        return plane;
+    }
+
+    /**
+    Returns the indices of the tiles in each hole. Every hole touches the animal, so the holes are flooded from the
+    neighbors of the tiles of the animal, and only those tiles and the holes themselves are visited.
+    @return the collection of holes in the polyform
+    */
+    public ArrayList<int[]> getHoles(){
+        ArrayList<int[]> holes = new ArrayList<int[]>();
+        int visited = nextStamp(0);
+        int[] queue = new int[16];
+        int id, size, tile, next, root;
+        for(int m = 0; m < tiles && holes.size() < complement.closed; m++){
+            id = members[m];
+            for(int k = 0; k < plane.degree(id); k++){
+                next = plane.neighbor(id, k);
+                if(inAnimal[next] || owner[next] == visited)
+                    continue;
+                root = complement.find(complement.label[next]);
+                if(complement.boundary[root] != 0)
+                    continue;
+                owner[next] = visited;
+                queue[0] = next;
+                size = 1;
+                for(int i = 0; i < size; i++){
+                    tile = queue[i];
+                    for(int j = 0; j < plane.degree(tile); j++){
+                        next = plane.neighbor(tile, j);
+                        if(!inAnimal[next] && owner[next] != visited){
+                            owner[next] = visited;
+                            if(size == queue.length)
+                                queue = Arrays.copyOf(queue, 2*size);
+                            queue[size++] = next;
+                        }
+                    }
+                }
+                holes.add(Arrays.copyOf(queue, size));
+            }
+        }
+        return holes;
+    }
+
+    /**
+    Reserves the given number of stamp values after a new one and returns the new one, clearing owner if they would run out.
+    */
+    private int nextStamp(int extra){
+        if(stamp > Integer.MAX_VALUE - extra - 2){
+            Arrays.fill(owner, 0);
+            stamp = 0;
+        }
+        int next = stamp + 1;
+        stamp += extra + 1;
+        return next;
+    }
+
+    /**
+    The connected components of one side, either the animal or the tiles outside of it.
+    */
+    private class Partition {
+        /**
+        True if this side is the animal.
+        */
+        final boolean animalSide;
+
+        /**
+        The label of each tile on this side, or -1 for tiles on the other side.
+        */
+        final int[] label;
+
+        /**
+        The parent of each label in the union-find forest. Roots are their own parent.
+        */
+        int[] parent = new int[16];
+
+        /**
+        The number of tiles in the component of each root.
+        */
+        int[] size = new int[16];
+
+        /**
+        The number of tiles on the edge of the tessellation in the component of each root.
+        */
+        int[] boundary = new int[16];
+
+        /**
+        The number of labels that have been made.
+        */
+        int labels;
+
+        /**
+        The number of components with at least one tile.
+        */
+        int components;
+
+        /**
+        The number of components with at least one tile and none on the edge of the tessellation.
+        */
+        int closed;
+
+        /**
+        The labels that were attached to another root by union, in order, so the unions can be rolled back.
+        */
+        int[] log = new int[16];
+
+        /**
+        How many entries of log are used.
+        */
+        int logSize;
+
+        Partition(boolean animalSide){
+            this.animalSide = animalSide;
+            this.label = new int[plane.size()];
+        }
+
+        /**
+        Discards every label.
+        */
+        void reset(){
+            Arrays.fill(label, -1);
+            labels = 0;
+            components = 0;
+            closed = 0;
+            logSize = 0;
+        }
+
+        /**
+        Makes a new label with no tiles.
+        */
+        int newLabel(){
+            if(labels == parent.length){
+                parent = Arrays.copyOf(parent, 2*labels);
+                size = Arrays.copyOf(size, 2*labels);
+                boundary = Arrays.copyOf(boundary, 2*labels);
+            }
+            parent[labels] = labels;
+            size[labels] = 0;
+            boundary[labels] = 0;
+            return labels++;
+        }
+
+        /**
+        Returns the root of the given label.
+        */
+        int find(int l){
+            while(parent[l] != l)
+                l = parent[l];
+            return l;
+        }
+
+        /**
+        Returns true if and only if the tile is on this side.
+        */
+        boolean member(int id){
+            return inAnimal[id] == animalSide;
+        }
+
+        /**
+        Stops counting the component of a root, before it is changed.
+        */
+        void forget(int root){
+            if(size[root] > 0){
+                components--;
+                if(boundary[root] == 0)
+                    closed--;
+            }
+        }
+
+        /**
+        Counts the component of a root again, after it is changed.
+        */
+        void remember(int root){
+            if(size[root] > 0){
+                components++;
+                if(boundary[root] == 0)
+                    closed++;
+            }
+        }
+
+        /**
+        Attaches the smaller of two roots to the larger one.
+        @return the root of the union
+        */
+        int union(int a, int b, boolean logged){
+            if(size[a] < size[b]){
+                int temp = a;
+                a = b;
+                b = temp;
+            }
+            parent[b] = a;
+            size[a] += size[b];
+            boundary[a] += boundary[b];
+            if(logged){
+                if(logSize == log.length)
+                    log = Arrays.copyOf(log, 2*logSize);
+                log[logSize++] = b;
+            }
+            return a;
+        }
+
+        /**
+        Adds a tile that has just moved to this side, unioning the components of its neighbors on this side.
+        @param t the index of the tile
+        @param logged whether the unions are logged so they can be rolled back
+        */
+        void join(int t, boolean logged){
+            int[] roots = new int[plane.p];
+            int count = 0;
+            int root, next;
+            for(int k = 0; k < plane.degree(t); k++){
+                next = plane.neighbor(t, k);
+                if(!member(next))
+                    continue;
+                root = find(label[next]);
+                boolean seen = false;
+                for(int i = 0; i < count && !seen; i++)
+                    seen = (roots[i] == root);
+                if(!seen)
+                    roots[count++] = root;
+            }
+            if(count == 0)
+                roots[count++] = newLabel();
+            for(int i = 0; i < count; i++)
+                forget(roots[i]);
+
+            label[t] = roots[0];
+            size[roots[0]]++;
+            if(plane.isBoundary(t))
+                boundary[roots[0]]++;
+            root = roots[0];
+            for(int i = 1; i < count; i++)
+                root = union(root, roots[i], logged);
+            remember(root);
+        }
+
+        /**
+        Undoes join(t, true), given the size of the log before it.
+        Every later logged join must have been rolled back already.
+        */
+        void rollback(int t, int previousLogSize){
+            forget(find(label[t]));
+            int[] roots = new int[logSize - previousLogSize + 1];
+            int count = 0;
+            int child, root;
+            while(logSize > previousLogSize){
+                child = log[--logSize];
+                root = parent[child];
+                size[root] -= size[child];
+                boundary[root] -= boundary[child];
+                parent[child] = child;
+                roots[count++] = child;
+            }
+            root = label[t]; // every union is undone, so the label it was given is a root again
+            size[root]--;
+            if(plane.isBoundary(t))
+                boundary[root]--;
+            label[t] = -1;
+            roots[count++] = root;
+            for(int i = 0; i < count; i++)
+                remember(roots[i]);
+        }
+
+        /**
+        Removes a tile that has just moved to the other side, splitting its component if needed.
+        @param t the index of the tile
+        */
+        void leave(int t){
+            int root = find(label[t]);
+            label[t] = -1;
+            forget(root);
+            size[root]--;
+            if(plane.isBoundary(t))
+                boundary[root]--;
+
+            int[] seeds = new int[plane.p];
+            int k = 0;
+            int next;
+            for(int i = 0; i < plane.degree(t); i++){
+                next = plane.neighbor(t, i);
+                if(member(next))
+                    seeds[k++] = next;
+            }
+            if(k <= 1){ // the rest of the component is still connected through its only neighbor
+                remember(root);
+                return;
+            }
+
+            int base = nextStamp(k);
+            int[][] queues = new int[k][];
+            int[] heads = new int[k];
+            int[] lengths = new int[k];
+            int[] groups = new int[k]; // a tiny union-find of the searches that have met
+            boolean[] done = new boolean[k];
+            for(int j = 0; j < k; j++){
+                queues[j] = new int[8];
+                queues[j][0] = seeds[j];
+                lengths[j] = 1;
+                groups[j] = j;
+                owner[seeds[j]] = base + j;
+            }
+
+            int running = k; // groups that are neither finished nor merged into another
+            int tile, other, a, b;
+            while(running > 1){
+                for(int j = 0; j < k && running > 1; j++){
+                    if(heads[j] == lengths[j] || done[group(groups, j)])
+                        continue;
+                    tile = queues[j][heads[j]++];
+                    for(int i = 0; i < plane.degree(tile); i++){
+                        next = plane.neighbor(tile, i);
+                        if(!member(next))
+                            continue;
+                        other = owner[next] - base;
+                        if(other >= 0 && other < k){
+                            a = group(groups, j);
+                            b = group(groups, other);
+                            if(a != b){
+                                groups[b] = a;
+                                running--;
+                            }
+                        }
+                        else {
+                            owner[next] = base + j;
+                            if(lengths[j] == queues[j].length)
+                                queues[j] = Arrays.copyOf(queues[j], 2*lengths[j]);
+                            queues[j][lengths[j]++] = next;
+                        }
+                    }
+                    a = group(groups, j);
+                    boolean finished = true;
+                    for(int i = 0; i < k && finished; i++)
+                        if(group(groups, i) == a && heads[i] < lengths[i])
+                            finished = false;
+                    if(finished){
+                        done[a] = true;
+                        running--;
+                    }
+                }
+            }
+
+            int[] found = new int[k]; // the number of tiles found by each group
+            for(int j = 0; j < k; j++)
+                found[group(groups, j)] += lengths[j];
+            int keep = -1; // the group that keeps the old label: the unfinished one, or else the biggest
+            for(int j = 0; j < k; j++)
+                if(group(groups, j) == j && !done[j])
+                    keep = j;
+            if(keep < 0)
+                for(int j = 0; j < k; j++)
+                    if(group(groups, j) == j && (keep < 0 || found[j] > found[keep]))
+                        keep = j;
+            for(int g = 0; g < k; g++){
+                if(group(groups, g) != g || g == keep)
+                    continue;
+                int piece = newLabel();
+                for(int j = 0; j < k; j++){
+                    if(group(groups, j) != g)
+                        continue;
+                    for(int i = 0; i < lengths[j]; i++){
+                        label[queues[j][i]] = piece;
+                        size[piece]++;
+                        if(plane.isBoundary(queues[j][i]))
+                            boundary[piece]++;
+                    }
+                }
+                size[root] -= size[piece];
+                boundary[root] -= boundary[piece];
+                remember(piece);
+            }
+            remember(root);
+        }
+
+        /**
+        Returns the group a search belongs to.
+        */
+        private int group(int[] groups, int j){
+            while(groups[j] != j)
+                j = groups[j];
+            return j;
+        }
+    }
+}
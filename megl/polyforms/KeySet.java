@@ -0,0 +1,120 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+A set of 64 bit polyform keys (see ZobristKeys), stored in an open addressing table without an object per key.
+Slots holding 0 are empty, so whether 0 is in the set is kept separately. The table is kept at most half full.
+*/
+final class KeySet {
+    /**
+    The keys in the set, each in the first empty slot at or after the slot its hash points to.
+    */
+    long[] table;
+
+    /**
+    Whether the key 0 is in the set.
+    */
+    boolean hasZero;
+
+    /**
+    The number of keys in the set.
+    */
+    int size;
+
+    /**
+    Creates an empty set.
+    */
+    KeySet(){
+        this.table = new long[64];
+    }
+
+    /**
+    Returns the slot the key's search starts from. The key is mixed again, since keys that differ only in their high bits
+    would otherwise start in the same slot.
+    */
+    private int slot(long key){
+        key *= 0x9e3779b97f4a7c15L;
+        return (int) (key ^ (key >>> 32)) & (table.length - 1);
+    }
+
+    /**
+    Adds a key to the set.
+    @param key the key of a polyform
+    @return true if the key was not already in the set
+    */
+    boolean add(long key){
+        if(key == 0){
+            if(hasZero)
+                return false;
+            hasZero = true;
+            size++;
+            return true;
+        }
+        int mask = table.length - 1;
+        int i = slot(key);
+        while(table[i] != 0){
+            if(table[i] == key)
+                return false;
+            i = (i + 1) & mask;
+        }
+        table[i] = key;
+        size++;
+        if(2*size > table.length)
+            grow();
+        return true;
+    }
+
+    /**
+    Returns true if and only if the key is in the set.
+    @param key the key of a polyform
+    @return true iff the key was added since the set was made or cleared
+    */
+    boolean contains(long key){
+        if(key == 0)
+            return hasZero;
+        int mask = table.length - 1;
+        int i = slot(key);
+        while(table[i] != 0){
+            if(table[i] == key)
+                return true;
+            i = (i + 1) & mask;
+        }
+        return false;
+    }
+
+    /**
+    Returns the number of keys in the set.
+    @return the number of keys
+    */
+    int size(){
+        return size;
+    }
+
+    /**
+    Removes every key from the set.
+    */
+    void clear(){
+        Arrays.fill(table, 0);
+        hasZero = false;
+        size = 0;
+    }
+
+    /**
+    Moves every key into a table twice as large.
+    */
+    private void grow(){
+        long[] old = table;
+        table = new long[2*old.length];
+        int mask = table.length - 1;
+        int i;
+        for(long key : old){
+            if(key == 0)
+                continue;
+            i = slot(key);
+            while(table[i] != 0)
+                i = (i + 1) & mask;
+            table[i] = key;
+        }
+    }
+}
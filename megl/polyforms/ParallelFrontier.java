@@ -0,0 +1,217 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+One level of a breadth first search of polyforms, expanded into the next level by the threads of a ForkJoinPool
+(see PolyformFinder.getHoleyest(Tessellation, int, int)). Every polyform of a level is expanded on its own, so the level is
+split into chunks of polyforms that are expanded by separate tasks, each writing the new polyforms it makes to its own list.
+Levels are kept as CompressedFrontiers, which take a few bytes for each tile instead of an array each, so much larger levels fit in the heap.
+A level is made of the frontiers the tasks wrote, which are read where they are, so no thread copies the whole level, and a chunk
+never spans two of them.
+A new polyform is only kept by the task that first adds its key to a ConcurrentKeySet shared by every task,
+and that task counts its holes right away, so every polyform of the next level is made and scored once.
+Each chunk keeps its own best polyform, and the best of them is chosen by the order of PolyformFinder.Candidate,
+so the result does not depend on which thread made which polyform.
+*/
+final class ParallelFrontier {
+    /**
+    The fewest polyforms in a chunk, so that tasks are not too small to be worth making. Chunks are a multiple of
+    CompressedFrontier.INDEX_STRIDE polyforms, so each can be read on its own.
+    */
+    static final int MIN_CHUNK = CompressedFrontier.INDEX_STRIDE;
+
+    /**
+    The number of chunks for each thread, so that threads that finish early can take chunks from the others.
+    */
+    static final int CHUNKS_PER_THREAD = 16;
+
+    /**
+    The compact tessellation that is searched.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The pool that expands the levels.
+    */
+    final ForkJoinPool pool;
+
+    /**
+    The polyforms of the current level, in the parts written by the tasks that made it, none of them empty.
+    */
+    CompressedFrontier[] level;
+
+    /**
+    The number of polyforms in the current level.
+    */
+    long size;
+
+    /**
+    The best polyform so far.
+    */
+    PolyformFinder.Candidate best;
+
+    /**
+    Starts a search with the polyform made of the root alone.
+    @param plane the compact tessellation that is searched
+    @param root the index of the tile every polyform contains
+    @param pool the pool that expands the levels
+    */
+    ParallelFrontier(CompactTessellation plane, int root, ForkJoinPool pool){
+        this.plane = plane;
+        this.pool = pool;
+        CompressedFrontier first = new CompressedFrontier(1);
+        int[] animal = new int[]{root};
+        first.add(animal);
+        this.level = new CompressedFrontier[]{first};
+        this.size = 1;
+        this.best = new PolyformFinder.Candidate(animal, Polyform.numHoles(plane, animal));
+    }
+
+    /**
+    Replaces the current level with every polyform made by adding one tile to a polyform of it, and updates the best polyform.
+    */
+    void expand(){
+        if(size == 0)
+            return;
+        int threads = pool.getParallelism();
+        long target = Math.max(MIN_CHUNK, size/((long) threads*CHUNKS_PER_THREAD) + 1);
+        int chunk = (int) Math.min((target + MIN_CHUNK - 1)/MIN_CHUNK*MIN_CHUNK, Integer.MAX_VALUE/MIN_CHUNK*MIN_CHUNK);
+        int chunks = 0;
+        for(CompressedFrontier part : level)
+            chunks += (int) ((part.size() + (long) chunk - 1)/chunk);
+        int[] parts = new int[chunks], starts = new int[chunks];
+        chunks = 0;
+        for(int i = 0; i < level.length; i++)
+            for(long start = 0; start < level[i].size(); start += chunk){
+                parts[chunks] = i;
+                starts[chunks++] = (int) start;
+            }
+        ExpandTask task = new ExpandTask(new ConcurrentKeySet(threads), level, chunk, parts, starts, 0, chunks);
+        pool.invoke(task);
+        int kept = 0;
+        size = 0;
+        for(int i = 0; i < chunks; i++){
+            if(task.made[i].size() > 0){
+                task.made[kept++] = task.made[i];
+                size += task.made[i].size();
+            }
+            if(task.bests[i] != null && task.bests[i].isBetterThan(best))
+                best = task.bests[i];
+        }
+        level = Arrays.copyOf(task.made, kept);
+    }
+
+    /**
+    Expands a range of chunks of the current level, splitting it in half until it is a single chunk.
+    */
+    final class ExpandTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        /**
+        The keys of the polyforms of the next level made so far by any task.
+        */
+        final ConcurrentKeySet reached;
+
+        /**
+        The parts of the level that is expanded.
+        */
+        final CompressedFrontier[] level;
+
+        /**
+        The most polyforms in each chunk.
+        */
+        final int chunk;
+
+        /**
+        The part of the level each chunk is in, shared by every task of the same expansion.
+        */
+        final int[] parts;
+
+        /**
+        The number of the first polyform of each chunk in its part, shared by every task of the same expansion.
+        */
+        final int[] starts;
+
+        /**
+        The first chunk of the range.
+        */
+        final int from;
+
+        /**
+        One past the last chunk of the range.
+        */
+        final int to;
+
+        /**
+        The new polyforms made from each chunk, shared by every task of the same expansion.
+        */
+        final CompressedFrontier[] made;
+
+        /**
+        The best new polyform made from each chunk, or null if there was none, shared by every task of the same expansion.
+        */
+        final PolyformFinder.Candidate[] bests;
+
+        ExpandTask(ConcurrentKeySet reached, CompressedFrontier[] level, int chunk, int[] parts, int[] starts, int from, int to){
+            this(reached, level, chunk, parts, starts, from, to, new CompressedFrontier[to], new PolyformFinder.Candidate[to]);
+        }
+
+        ExpandTask(ConcurrentKeySet reached, CompressedFrontier[] level, int chunk, int[] parts, int[] starts, int from, int to,
+                CompressedFrontier[] made, PolyformFinder.Candidate[] bests){
+            this.reached = reached;
+            this.level = level;
+            this.chunk = chunk;
+            this.parts = parts;
+            this.starts = starts;
+            this.from = from;
+            this.to = to;
+            this.made = made;
+            this.bests = bests;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from > 1){
+                int middle = (from + to) >>> 1;
+                invokeAll(new ExpandTask(reached, level, chunk, parts, starts, from, middle, made, bests),
+                        new ExpandTask(reached, level, chunk, parts, starts, middle, to, made, bests));
+                return;
+            }
+            CompressedFrontier part = level[parts[from]];
+            CompressedFrontier next = new CompressedFrontier(part.width + 1);
+            CompressedFrontier.Reader reader = part.read(starts[from]);
+            PolyformFinder.Candidate chunkBest = null;
+            int[] animal = new int[part.width], expanded = new int[part.width + 1];
+            int tile, neighbor, holes, j;
+            long key;
+            for(int n = starts[from]; n < starts[from] + Math.min(chunk, part.size() - starts[from]); n++){
+                reader.next(animal);
+                key = 0;
+                for(int id : animal)
+                    key ^= plane.key(id);
+                for(int i = 0; i < animal.length; i++){
+                    tile = animal[i];
+                    for(int k = 0; k < plane.degree(tile); k++){
+                        neighbor = plane.neighbor(tile, k);
+                        if(Arrays.binarySearch(animal, neighbor) >= 0 || !reached.add(key ^ plane.key(neighbor)))
+                            continue; // the neighbor is in the polyform, or the expansion was already made by this or another task
+                        for(j = 0; j < animal.length && animal[j] < neighbor; j++)
+                            expanded[j] = animal[j];
+                        expanded[j] = neighbor;
+                        for(; j < animal.length; j++)
+                            expanded[j + 1] = animal[j];
+                        next.add(expanded);
+                        holes = Polyform.numHoles(plane, expanded);
+                        if(chunkBest == null || holes > chunkBest.holes || (holes == chunkBest.holes && Arrays.compare(expanded, chunkBest.tiles) < 0))
+                            chunkBest = new PolyformFinder.Candidate(expanded.clone(), holes); // every polyform of the chunk has the same number of tiles
+                    }
+                }
+            }
+            made[from] = next;
+            bests[from] = chunkBest;
+        }
+    }
+}
@@ -0,0 +1,183 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.RecursiveTask;
+import java.util.function.Supplier;
+
+/**
+Makes the same polyforms as PolyformEnumerator, splitting the search between the threads of a ForkJoinPool.
+Each task searches one Subtree, which is a polyform together with the tiles seen and the untried tiles below it.
+A task hands the subtree below a polyform to a new task instead of searching it when either
+    the polyform has fewer than splitDepth tiles, so the top of the search is always spread out, or
+    the subtree is at least MIN_SPLIT_LEVELS levels deep and the pool has no surplus of queued tasks,
+        meaning other threads are about to run out of work. This splits large subtrees again as they are found,
+        unless the pool only has one thread.
+Forked tasks are queued by the thread that made them and stolen by idle threads.
+Every thread has its own PolyformEnumerator and HoleEvaluator, made the first time it runs a task. The visitor is either
+shared by every thread, so it must be thread safe, or made for each thread in the same way.
+The tasks below polyforms with fewer than splitDepth tiles are the same in every run, so a SearchCheckpoint can record
+each of them when it is finished, and a resumed search skips them. For the same reason, a SearchShard can pick out the
+tasks below the polyforms with SearchShard.SHARD_DEPTH tiles that it searches, if splitDepth is larger than that.
+*/
+public class ParallelPolyformEnumerator {
+    /**
+    Subtrees with fewer levels than this are only handed off because of splitDepth, since they are too small to be worth a task.
+    */
+    static final int MIN_SPLIT_LEVELS = 3;
+
+    /**
+    The compact tessellation that is searched.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The tile every polyform contains.
+    */
+    final int root;
+
+    /**
+    The largest number of tiles in a polyform.
+    */
+    final int maxTiles;
+
+    /**
+    Polyforms with fewer tiles than this always have the search below them handed to a new task.
+    */
+    final int splitDepth;
+
+    /**
+    The pool that runs the tasks.
+    */
+    final ForkJoinPool pool;
+
+    /**
+    The enumerator of each thread.
+    */
+    final ThreadLocal<PolyformEnumerator> enumerators;
+
+    /**
+    If not null, records the tasks below polyforms with fewer than splitDepth tiles as they finish, and skips the ones
+    it already has.
+    */
+    SearchCheckpoint checkpoint;
+
+    /**
+    If not null, only the tasks below polyforms with SearchShard.SHARD_DEPTH tiles that belong to this shard are searched.
+    The polyforms above them are visited by every shard, but only counted by shard 0.
+    */
+    SearchShard shard;
+
+    /**
+    Sets up a parallel search of the polyforms containing the root.
+    @param plane the compact tessellation that is searched
+    @param root the index of the tile every polyform contains
+    @param maxTiles the largest number of tiles in a polyform
+    @param evaluators makes a new, empty HoleEvaluator for each thread
+    @param splitDepth the search below every polyform with fewer tiles than this is handed to a new task
+    @param pool the pool that runs the tasks
+    @throws IllegalArgumentException if maxTiles is less than 1, splitDepth is negative, or the root is not in the tessellation
+    */
+    public ParallelPolyformEnumerator(CompactTessellation plane, int root, int maxTiles, Supplier<HoleEvaluator> evaluators,
+            int splitDepth, ForkJoinPool pool){
+        if(maxTiles < 1)
+            throw new IllegalArgumentException("can't have polyform with no tiles");
+        if(root < 0 || root >= plane.size())
+            throw new IllegalArgumentException("the root " + root + " is not in the tessellation");
+        if(splitDepth < 0)
+            throw new IllegalArgumentException("the split depth can't be negative");
+        this.plane = plane;
+        this.root = root;
+        this.maxTiles = maxTiles;
+        this.splitDepth = splitDepth;
+        this.pool = pool;
+        this.enumerators = ThreadLocal.withInitial(() -> new PolyformEnumerator(plane, root, maxTiles, evaluators.get()));
+    }
+
+    /**
+    Gives every polyform containing the root with up to maxTiles tiles to the visitor, except those made by adding tiles
+    to a polyform the visitor chose not to extend. Polyforms are visited by several threads at once, in no particular order.
+    @param visitor examines each polyform. Must be thread safe
+    @return the number of polyforms that were visited
+    */
+    public long enumerate(PolyformVisitor visitor){
+        return pool.invoke(new SubtreeTask(PolyformEnumerator.rootSubtree(root), ThreadLocal.withInitial(() -> visitor)));
+    }
+
+    /**
+    Same as enumerate(PolyformVisitor), but gives each thread its own visitor, made the first time it runs a task,
+    so visitors can count into their own fields without synchronizing. Combine the visitors afterwards.
+    @param visitors makes a new visitor for each thread
+    @return the number of polyforms that were visited
+    */
+    public long enumerate(Supplier<? extends PolyformVisitor> visitors){
+        return pool.invoke(new SubtreeTask(PolyformEnumerator.rootSubtree(root), ThreadLocal.withInitial(visitors)));
+    }
+
+    /**
+    Searches one subtree, forking new tasks for the parts it hands off.
+    */
+    private final class SubtreeTask extends RecursiveTask<Long> implements PolyformEnumerator.Splitter {
+        private static final long serialVersionUID = 1L;
+
+        /**
+        The part of the search this task covers.
+        */
+        private final PolyformEnumerator.Subtree subtree;
+
+        /**
+        The visitor of each thread, which may be the same one for every thread.
+        */
+        private final ThreadLocal<? extends PolyformVisitor> visitors;
+
+        /**
+        The tasks this task has forked.
+        */
+        private final ArrayList<SubtreeTask> forked = new ArrayList<SubtreeTask>();
+
+        SubtreeTask(PolyformEnumerator.Subtree subtree, ThreadLocal<? extends PolyformVisitor> visitors){
+            this.subtree = subtree;
+            this.visitors = visitors;
+        }
+
+        @Override
+        protected Long compute(){
+            if(shard != null && subtree.prefix.length == SearchShard.SHARD_DEPTH && !shard.owns(ZobristKeys.of(plane, subtree.prefix)))
+                return 0L;
+            boolean unit = (checkpoint != null && subtree.prefix.length < splitDepth);
+            long key = 0;
+            if(unit){
+                key = ZobristKeys.of(plane, subtree.prefix);
+                long done = checkpoint.visitedIn(key);
+                if(done >= 0)
+                    return done;
+            }
+            PolyformEnumerator enumerator = enumerators.get();
+            enumerator.splitter = this;
+            long visited = enumerator.enumerate(subtree, visitors.get());
+            enumerator.splitter = null; // the thread may run other tasks with the same enumerator while joining
+            if(shard != null && shard.index != 0 && subtree.prefix.length < SearchShard.SHARD_DEPTH)
+                visited = 0; // every polyform below was split off, so these are only the polyforms with one more tile
+            for(SubtreeTask task : forked)
+                visited += task.join();
+            if(unit)
+                checkpoint.finish(key, visited);
+            return visited;
+        }
+
+        @Override
+        public boolean wantsSplit(int size){
+            if(size < splitDepth)
+                return true;
+            return pool.getParallelism() > 1 && maxTiles - size >= MIN_SPLIT_LEVELS && ForkJoinTask.getSurplusQueuedTaskCount() <= 0;
+        }
+
+        @Override
+        public void split(PolyformEnumerator.Subtree part){
+            SubtreeTask task = new SubtreeTask(part, visitors);
+            task.fork();
+            forked.add(task);
+        }
+    }
+}
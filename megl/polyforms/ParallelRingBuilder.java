@@ -0,0 +1,217 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+Makes the next ring of a tessellation with several threads. Produces exactly the same tiles and adjacencies
+as the sequential generators in Tessellation, in three passes over the rings:
+    First, the number of tiles each tile of the previous ring makes is counted. It only depends on whether that tile
+        (and for p = 3, the next one) was primary, so a prefix sum of the counts gives every new tile's ringPos.
+    Second, each chunk of the previous ring makes its tiles and links them to the previous ring.
+    Third, each chunk of the new ring links its tiles to the next tile in the ring, which also stitches the
+        seams between chunks and the last tile to the first.
+Each pass is split into chunks that are run by a ForkJoinPool.
+*/
+class ParallelRingBuilder {
+    /**
+    The number of tiles that one task handles before it is split further.
+    */
+    static final int CHUNK = 4096;
+
+    /**
+    Rings made from previous rings smaller than this are made sequentially, since splitting them costs more than it saves.
+    */
+    static final int THRESHOLD = 4 * CHUNK;
+
+    /**
+    Specifies how many tiles share an edge with any given tile.
+    */
+    final int p;
+
+    /**
+    Specifies how many tiles share any given vertex.
+    */
+    final int q;
+
+    /**
+    The pool that runs the chunks.
+    */
+    final ForkJoinPool pool;
+
+    /**
+    Creates a builder for rings of the {p,q} tessellation.
+    @param p the number of Tiles that share an edge with any given Tile
+    @param q the number of Tiles that share any given vertex
+    @param pool the pool that will make the rings
+    */
+    ParallelRingBuilder(int p, int q, ForkJoinPool pool){
+        this.p = p;
+        this.q = q;
+        this.pool = pool;
+    }
+
+    /**
+    Creates the next ring of tiles after at least two rings have been made. Same as Tessellation.makeNextRing.
+    @param tiles the Tiles of the tessellation
+    @param currentRing the Tiles in the ring being created
+    @param previousRing the Tiles that are in the previous ring
+    @param ring the number of the ring being generated
+    @return the number of tiles that were generated for this ring
+    */
+    int makeNextRing(ArrayList<Tile> tiles, ArrayList<Tile> currentRing, ArrayList<Tile> previousRing, int ring){
+        Tile[] previous = previousRing.toArray(new Tile[previousRing.size()]);
+        int[] offsets = new int[previous.length];
+
+        pool.invoke(new ChunkTask(0, previous.length, (from, to) -> {
+            for(int n = from; n < to; n++)
+                offsets[n] = countChildren(previous, n);
+        }));
+        Arrays.parallelPrefix(offsets, Integer::sum); // offsets[n] is now one past the last tile made by previous[n]
+        int size = offsets[previous.length-1];
+
+        Tile[] current = new Tile[size];
+        pool.invoke(new ChunkTask(0, previous.length, (from, to) -> {
+            for(int n = from; n < to; n++)
+                makeChildren(previous, n, (n == 0 ? 0 : offsets[n-1]), current, ring);
+        }));
+        pool.invoke(new ChunkTask(0, size, (from, to) -> {
+            for(int pos = from; pos < to; pos++)
+                linkToNext(current[pos], current[(pos+1) % size]);
+        }));
+
+        currentRing.addAll(Arrays.asList(current));
+        tiles.addAll(currentRing);
+        return size;
+    }
+
+    /**
+    Counts how many tiles of the next ring the given tile of the previous ring makes.
+    @param previous the tiles of the previous ring
+    @param n the position of the tile in the previous ring
+    @return the number of tiles it makes
+    */
+    private int countChildren(Tile[] previous, int n){
+        boolean primary = previous[n].wasPrimary;
+        if(p == 3){
+            if(primary)
+                return 0; // it already has 3 adjacent tiles
+            return 1 + (q-4) - (q >= 5 && previous[(n+1) % previous.length].wasPrimary ? 1 : 0);
+        }
+        if(q == 3)
+            return Math.max(0, (primary ? p-5 : p-6)) + 1;
+        return (primary ? (p-3)*(q-2) - 1 : (p-2)*(q-2) - 1);
+    }
+
+    /**
+    Makes the tiles that the given tile of the previous ring is responsible for and links them to the previous ring.
+    Mirrors the body of the loop over the previous ring in the matching generator of Tessellation.
+    @param previousRing the tiles of the previous ring
+    @param n the position of the tile in the previous ring
+    @param ringPos the ringPos of the first tile that will be made
+    @param currentRing the tiles of the ring being created
+    @param ring the number of the ring being generated
+    */
+    private void makeChildren(Tile[] previousRing, int n, int ringPos, Tile[] currentRing, int ring){
+        Tile previous = previousRing[n];
+        Tile current;
+        if(p == 3){
+            if(previous.wasPrimary)
+                return;
+            current = new Tile(p, Type.EMPTY, ring, ringPos, true); // new primary tile
+            previous.adjacent[2] = current;
+            current.adjacent[0] = previous;
+            currentRing[ringPos++] = current;
+            for(int i = 0; i < q-4; i++){
+                if(i == q-5 && previousRing[(n+1) % previousRing.length].wasPrimary)
+                    break; // this tile is actually the next primary tile
+                currentRing[ringPos] = new Tile(p, Type.EMPTY, ring, ringPos, false); // new secondary tile
+                ringPos++;
+            }
+        }
+        else if(q == 3){
+            for(int i = 2; i < (previous.wasPrimary ? p-3 : p-4); i++){
+                current = new QThreeTile(p, Type.EMPTY, ring, ringPos, true); // new primary tile
+                previous.adjacent[i] = current;
+                current.adjacent[0] = previous;
+                currentRing[ringPos++] = current;
+            }
+            current = new QThreeTile(p, Type.EMPTY, ring, ringPos, false); // new secondary tile
+            previous.adjacent[(previous.wasPrimary ? p-3 : p-4)] = current;
+            current.adjacent[0] = previous;
+            currentRing[ringPos] = current;
+
+            Tile other = previousRing[(n+1) % previousRing.length]; // the secondary tile also touches the next tile of the previous ring
+            other.adjacent[(other.wasPrimary ? p-2 : p-3)] = current;
+            current.adjacent[p-2] = other;
+        }
+        else {
+            for(int i = 2; i < p; i++){
+                if(i == p-1 && previous.wasPrimary)
+                    break; // this tile is accounted for by link to previous ring
+                current = new Tile(p, Type.EMPTY, ring, ringPos, true); // new primary tile
+                previous.adjacent[i] = current;
+                current.adjacent[0] = previous;
+                currentRing[ringPos++] = current;
+                for(int j = 1; j <= q-3; j++){
+                    if(j == q-3 && ((previous.wasPrimary && i == p-2) || (!previous.wasPrimary && i == p-1)))
+                        break; //this tile will be accounted for by the next primary tile of the next tile
+                    currentRing[ringPos] = new Tile(p, Type.EMPTY, ring, ringPos, false); // new secondary tile
+                    ringPos++;
+                }
+            }
+        }
+    }
+
+    /**
+    Links a tile to the next tile in its ring in both directions.
+    @param current a tile of the ring being created
+    @param next the tile after it in the ring
+    */
+    private void linkToNext(Tile current, Tile next){
+        current.adjacent[1] = next;
+        if(q == 3 || next.wasPrimary)
+            next.adjacent[p-1] = current; // p-1 is 2 for primary tiles when p = 3
+        else
+            next.adjacent[0] = current;
+    }
+
+    /**
+    The work done on one range of positions in a ring.
+    */
+    interface RangeBody {
+        /**
+        Handles every position from from (inclusive) to to (exclusive).
+        */
+        void run(int from, int to);
+    }
+
+    /**
+    Splits a range of positions in half until it is at most CHUNK long, then runs the body on it.
+    */
+    static class ChunkTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from;
+        final int to;
+        final RangeBody body;
+
+        ChunkTask(int from, int to, RangeBody body){
+            this.from = from;
+            this.to = to;
+            this.body = body;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= CHUNK){
+                body.run(from, to);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new ChunkTask(from, mid, body), new ChunkTask(mid, to, body));
+        }
+    }
+}
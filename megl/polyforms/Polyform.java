@@ -1,7 +1,9 @@
 package megl.polyforms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.HashSet;
+import java.util.PrimitiveIterator;
 import java.util.Stack;
 import java.util.Date;
 import java.util.Scanner;
@@ -24,9 +26,10 @@ public class Polyform{
     int intendedTiles;
     
     /**
-    The set of tiles that compose the animal that this polyform represents.
+    The absolute indices (see Tile.getAbsoluteIndex) of the tiles that compose the animal that this polyform represents.
+    They are also the indices of the tiles in plane.tessellation and in any compact copy of it.
     */
-    HashSet<Tile> animal;
+    TileSet animal;
 
     /**
     Creates the structure needed to use a polyform.
@@ -36,7 +39,7 @@ public class Polyform{
             throw new IllegalArgumentException("can't have polyform with no tiles");
         this.plane = plane;
         this.intendedTiles = intendedTiles;
-        this.animal = new HashSet<Tile>();
+        this.animal = new TileSet();
     }
     
     /**
@@ -47,9 +50,15 @@ public class Polyform{
     }
     
     /**
-    Creates a polyform that stores only its set of animal tiles.
+    Creates a polyform of the tiles with the given absolute indices. The set is used as it is, not copied.
+    @param plane the tessellation that the tiles are in
+    @param animal the absolute indices of the tiles
+    @throws IllegalArgumentException if some index is not of a tile in the tessellation
     */
-    public Polyform(HashSet<Tile> animal){
+    public Polyform(Tessellation plane, TileSet animal){
+        if(animal.last() >= plane.tessellation.size())
+            throw new IllegalArgumentException("tile " + animal.last() + " is not in the tessellation");
+        this.plane = plane;
         this.animal = animal;
     }
 
@@ -88,111 +97,57 @@ public class Polyform{
     }
     
     /**
-    Returns true if and only if every Tile in the tessellation with Type ANIMAL 
-    can be reached from the tile with Type animal that has lowest index.
+    Returns true if and only if every Tile in the animal can be reached from any other
+    by only passing through tiles in the animal.
+    Does not change the Type of any Tile, so several threads can check polyforms in the same tessellation (see HoleCounter).
     @param plane the tessellation that is being searched
-    @param animal the tiles in the tessellation that are being checked for connectivity
+    @param animal the absolute indices of the tiles that are being checked for connectivity
     @return true if and only if the polyform is connected, including if the polyform is empty
-     no longer throws IllegalArgumentException if the tessellation has no Tiles with Type ANIMAL
-    */
-    public static boolean isConnected(Tessellation plane, HashSet<Tile> animal){
-        Type[] preState = new Type[plane.tessellation.size()];
-        Tile temp;
-        for(int i = 0; i < preState.length; i++){
-            temp = plane.tessellation.get(i);
-            preState[i] = temp.type;
-            if(animal.contains(temp))
-                temp.type = Type.ANIMAL;
-        }
-        
-        boolean isConnected = isConnected(plane.tessellation);
-        
-        for(int i = 0; i < preState.length; i++){
-            plane.tessellation.get(i).type = preState[i];
-        }
-        
-        return isConnected;
+    */
+    public static boolean isConnected(Tessellation plane, TileSet animal){
+        return HoleCounter.isConnected(plane, animal);
     }
     
     /**
-    Returns an arraylist containing hashsets representing holes. Each element in the arraylist is a distinct hole.
+    Returns an arraylist containing the tiles of each hole. Each element in the arraylist is a distinct hole, given by
+    the positions of its tiles in the list, which are their absolute indices when the list is a whole tessellation.
+    Every tile outside the animal is labeled in a single sweep (see HoleLabeling), and the sets are filled in one more pass.
+    Use HoleLabeling directly when the tiles of each hole are not needed.
     @param tiles the Tiles composing the Tessellation
     @return the collection of holes in the polyform
     */
-    public static ArrayList<HashSet<Tile>> getHoles(ArrayList<Tile> tiles){
-        ArrayList<HashSet<Tile>> holes = new ArrayList<HashSet<Tile>>();
-        Stack<Tile> unvisited;
-        HashSet<Tile> currentHole;
-        Tile tile;
-        boolean alreadyFound;
-        boolean falseHole;
-        
-        for(int i = tiles.size()-1; i >= 0; i--){
-            tile = tiles.get(i);
-            alreadyFound = false;
-            if(tile.type == Type.HOLE || tile.type == Type.EMPTY){
-                for(int j = 0; j < holes.size(); j++){
-                    if(holes.get(j).contains(tile)){
-                        alreadyFound = true;
-                        break;
-                    }
-                }
-                if(!alreadyFound){
-                    falseHole = false;
-                    currentHole = new HashSet<Tile>();
-                    unvisited = new Stack<Tile>();
-                    unvisited.push(tile);
-                    while(!unvisited.empty() && !falseHole){
-                        tile = unvisited.pop();
-                        if(currentHole.contains(tile))
-                            continue;
-                        currentHole.add(tile);
-                        for(int j = 0; j < tile.adjacent.length; j++){
-                            if(tile.adjacent[j] == null){
-                                falseHole = true;
-                                break;
-                            }
-                            if(tile.adjacent[j].type == Type.HOLE || tile.adjacent[j].type == Type.EMPTY)
-                                unvisited.push(tile.adjacent[j]);
-                        }
-                    }
-                    if(!falseHole)
-                        holes.add(currentHole);
-                }
-            }
+    public static ArrayList<TileSet> getHoles(ArrayList<Tile> tiles){
+        HoleLabeling labeling = new HoleLabeling(tiles);
+        ArrayList<TileSet> holes = new ArrayList<TileSet>(labeling.numHoles());
+        int[] holeOf = new int[labeling.numComponents()]; // the position of each component in holes, or -1
+        Arrays.fill(holeOf, -1);
+        for(HoleLabeling.Hole hole : labeling.getHoles()){
+            holeOf[hole.getId()] = holes.size();
+            holes.add(new TileSet());
+        }
+        int label;
+        for(int i = 0; i < tiles.size(); i++){
+            label = labeling.getLabel(i);
+            if(label >= 0 && holeOf[label] >= 0)
+                holes.get(holeOf[label]).add(i);
         }
-        
         return holes;
     }
     
     /**
-    Returns an arraylist containing hashsets representing holes. Each element in the arraylist is a distinct hole.
+    Returns an arraylist containing the absolute indices of the tiles of each hole. Each element in the arraylist is a distinct hole.
+    Does not change the Type of any Tile, so several threads can examine polyforms in the same tessellation (see HoleCounter).
+    A lazy tessellation gets a ring around the animal first if it needs one (see surround), which is not thread safe,
+    so threads sharing a lazy tessellation should make the rings their polyforms reach, plus one, in advance.
     @param plane the tessellation that is being examined
-    @param animal the Tiles composing the tessellation
+    @param animal the absolute indices of the tiles composing the polyform
     @return the collection of holes in the polyform
     */
-    @SuppressWarnings("unchecked")
-    public static ArrayList<HashSet<Tile>> getHoles(Tessellation plane, HashSet<Tile> animal){
+    public static ArrayList<TileSet> getHoles(Tessellation plane, TileSet animal){
         if(animal == null)
             return null;
-        Type[] preState = new Type[plane.tessellation.size()];
-        Tile temp;
-        for(int i = 0; i < preState.length; i++){
-            temp = plane.tessellation.get(i);
-            preState[i] = temp.type;
-            if(animal.contains(temp))
-                temp.type = Type.ANIMAL;
-            else
-                temp.type = Type.EMPTY;
-        }
-        
-        ArrayList<HashSet<Tile>> holes = getHoles(plane.tessellation);
-        
-        for(int i = 0; i < preState.length; i++){
-            plane.tessellation.get(i).type = preState[i];
-        }
-        
-        return holes;
+        surround(plane, animal);
+        return HoleCounter.getHoles(plane, animal);
     }
 
     
@@ -203,42 +158,186 @@ public class Polyform{
     @return the number of holes in the polyform
     */
     public static int numHoles(ArrayList<Tile> tiles){
-        return getHoles(tiles).size();
+        return new HoleLabeling(tiles).numHoles();
     }
     
     /**
     Counts how many unique holes are in the given polyform. A hole is only counted if each Tile that is part of it
-    is surrounded entirely by Tiles that have Type HOLE or ANIMAL. If any Tiles are EMPTY or null, they are excluded.
+    is surrounded entirely by other Tiles, none of which are on the edge of the tessellation.
+    Does not change the Type of any Tile, so several threads can examine polyforms in the same tessellation (see HoleCounter).
+    A lazy tessellation gets a ring around the animal first if it needs one (see surround), which is not thread safe,
+    so threads sharing a lazy tessellation should make the rings their polyforms reach, plus one, in advance.
     @param plane the tessellation that is being examined
-    @param animal the Tiles composing the tessellation
+    @param animal the absolute indices of the tiles composing the polyform
     @return the number of holes in the polyform
     */
-    @SuppressWarnings("unchecked")
-    public static int numHoles(Tessellation plane, HashSet<Tile> animal){
+    public static int numHoles(Tessellation plane, TileSet animal){
         if(animal == null)
             return 0;
-        Type[] preState = new Type[plane.tessellation.size()];
-        Tile temp;
-        for(int i = 0; i < preState.length; i++){
-            temp = plane.tessellation.get(i);
-            preState[i] = temp.type;
-            if(animal.contains(temp))
-                temp.type = Type.ANIMAL;
-            else
-                temp.type = Type.EMPTY;
-        }
-        
-        int holes = numHoles(plane.tessellation);
-        
-        for(int i = 0; i < preState.length; i++){
-            plane.tessellation.get(i).type = preState[i];
+        surround(plane, animal);
+        return HoleCounter.numHoles(plane, animal);
+    }
+
+    /**
+    If the tessellation is lazy, makes sure it has a ring outside of every tile in the animal.
+    Every tile in that ring is outside the polyform, so holes can never be mistaken for the edge of the tessellation.
+    Adding a ring is not thread safe (see Tessellation.addRing()), but nothing is changed if the ring was already made.
+    @param plane the tessellation that the animal is in
+    @param animal the absolute indices of the tiles composing the polyform
+    */
+    static void surround(Tessellation plane, TileSet animal){
+        if(!plane.isLazy() || animal.isEmpty())
+            return;
+        int last = animal.last(); // the tile of the outermost ring with the highest index
+        int ring = 0;
+        int end = 1; // the index of the first tile past the ring
+        while(end <= last){
+            plane.ensureRing(++ring);
+            end += plane.ringSizes[ring];
         }
-        
-        return holes;
+        plane.ensureRing(ring + 1);
     }
     
-    
-        
+    /**
+    Returns true if and only if every tile in the given array can be reached from the first one
+    by only passing through tiles in the array.
+    @param plane the compact tessellation that is being searched
+    @param animal the indices of the tiles that are being checked for connectivity
+    @return true if and only if the polyform is connected, including if the polyform is empty
+    */
+    public static boolean isConnected(CompactTessellation plane, int[] animal){
+        return HoleCounter.isConnected(plane, animal);
+    }
+
+    /**
+    Returns an arraylist containing the indices of the tiles in each hole. Each element in the arraylist is a distinct hole.
+    A hole is only counted if none of its tiles are on the edge of the tessellation.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    @return the collection of holes in the polyform
+    */
+    public static ArrayList<int[]> getHoles(CompactTessellation plane, int[] animal){
+        return HoleCounter.getHoles(plane, animal);
+    }
+
+    /**
+    Counts how many unique holes are in the given polyform. A hole is only counted if none of its tiles are
+    on the edge of the tessellation.
+    @param plane the compact tessellation that is being examined
+    @param animal the indices of the tiles composing the polyform
+    @return the number of holes in the polyform
+    */
+    public static int numHoles(CompactTessellation plane, int[] animal){
+        return HoleCounter.numHoles(plane, animal);
+    }
+
+    /**
+    Returns an upper bound on the holes of any polyform with the given number of tiles that is made by adding tiles,
+    each next to the polyform, to a polyform of the given size with the given number of shared edges.
+    A polyform of N tiles with I shared edges has pN - 2I edges that are sides of only one of its tiles, and each of them
+    borders either a hole or the outside of the polyform with its holes filled in. Each of the h holes has at least one tile,
+    so at least p edges around it, and the filled polyform has at least N + h tiles, so pN - 2I >= hp + minPerimeter(N + h).
+    Every added tile shares at least one edge, so I is at least the shared edges so far plus the number of tiles added.
+    minPerimeter grows by at most p - 2 with each tile, so the bound only grows with N.
+    @param p the number of sides of each tile
+    @param q the number of tiles around each vertex
+    @param size the number of tiles in the polyform so far
+    @param sharedEdges the number of edges that are sides of two tiles of the polyform so far
+    @param tiles the number of tiles in the finished polyform, at least size
+    @return the most holes the finished polyform can have
+    */
+    public static int maxHoles(int p, int q, int size, int sharedEdges, int tiles){
+        return maxHolesWithin(p, q, tiles, (long) (p - 2)*tiles + 2*size - 2*sharedEdges);
+    }
+
+    /**
+    Returns the most holes a polyform with the given number of tiles can have if at most the given number of edges
+    are around it and its holes, as in maxHoles.
+    @param p the number of sides of each tile
+    @param q the number of tiles around each vertex
+    @param tiles the number of tiles in the polyform
+    @param edges the most edges that are sides of only one of its tiles
+    @return the largest h with hp + minPerimeter(tiles + h) at most edges, or 0 if there is none
+    */
+    static int maxHolesWithin(int p, int q, int tiles, long edges){
+        int holes = 0;
+        while((long) (holes + 1)*p + minPerimeter(p, q, tiles + holes + 1) <= edges)
+            holes++;
+        return holes;
+    }
+
+    /**
+    Returns a lower bound on the number of edges around a polyform of m tiles without holes, meaning the edges that
+    are sides of only one of its tiles. It never shrinks as m grows.
+    In the Euclidean tessellations it is the least perimeter found by Harary and Harborth: 2ceil(2sqrt(m)) for squares,
+    2ceil(sqrt(12m - 3)) for hexagons, and ceil(sqrt(6m)) for triangles, which is a little below their exact value
+    2ceil((m + sqrt(6m))/2) - m, since that one shrinks at some m.
+    In the hyperbolic ones, a polyform of m > 1 tiles with V interior vertices has I = m - 1 + V shared edges. In the graph of
+    tiles that share an edge, each interior vertex is a face of q sides, and the boundary walk of the outer face has some
+    length L, so qV + L = 2I, and the perimeter P = pm - 2I = p + (m - 1)b + 2L/(q - 2), where b = (pq - 2p - 2q)/(q - 2).
+    Every tile with a side on the perimeter is on that walk and has at most p - 1 such sides, so L >= P/(p - 1) and
+    P >= (p + (m - 1)b)(p - 1)(q - 2)/((p - 1)(q - 2) - 2).
+    On the sphere, 0 is returned, since the tessellation is finite.
+    @param p the number of sides of each tile
+    @param q the number of tiles around each vertex
+    @param m the number of tiles in the polyform, at least 1
+    @return the fewest edges that can be around the polyform
+    */
+    public static int minPerimeter(int p, int q, int m){
+        if(p == 4 && q == 4)
+            return 2*ceilSqrt(4L*m);
+        if(p == 6 && q == 3)
+            return 2*ceilSqrt(12L*m - 3);
+        if(p == 3 && q == 6)
+            return ceilSqrt(6L*m);
+        if((p - 2)*(q - 2) < 4)
+            return 0;
+        if(m == 1)
+            return p;
+        long divisor = (long) (p - 1)*(q - 2) - 2;
+        long dividend = ((long) p*(q - 2) + (long) (m - 1)*(p*q - 2*p - 2*q))*(p - 1);
+        return (int) ((dividend + divisor - 1)/divisor);
+    }
+
+    /**
+    Returns the smallest int whose square is at least x.
+    */
+    private static int ceilSqrt(long x){
+        long root = (long) Math.sqrt((double) x);
+        while(root*root < x)
+            root++;
+        while(root > 0 && (root - 1)*(root - 1) >= x)
+            root--;
+        return (int) root;
+    }
+
+    /**
+    Returns the indices of this polyform's tiles in the given compact tessellation.
+    Tiles that are not part of the tessellation are left out.
+    @param plane the compact tessellation that the indices are for
+    @return the index of each tile in the polyform, in ascending order
+    */
+    public int[] getIndices(CompactTessellation plane){
+        int[] indices = animal.toArray();
+        int count = indices.length;
+        while(count > 0 && indices[count-1] >= plane.size())
+            count--;
+        return (count == indices.length ? indices : Arrays.copyOf(indices, count));
+    }
+
+    /**
+    Returns the tessellation's own Tiles of this polyform.
+    @return the tiles in the polyform, in ascending order
+    */
+    public Tile[] getTiles(){
+        Tile[] tiles = new Tile[size()];
+        int count = 0;
+        PrimitiveIterator.OfInt ids = animal.iterator();
+        while(ids.hasNext())
+            tiles[count++] = plane.tessellation.get(ids.nextInt());
+        return tiles;
+    }
+
     /**
     Two polyforms are equal if their sets of animal tiles are equal.
     @param other the other Polyform
@@ -248,31 +347,22 @@ public class Polyform{
     public boolean equals(Object other){
         if(other instanceof Polyform){
             Polyform p = (Polyform) other;
-            if(this.animal.size() != p.animal.size())
-                return false;
-            Object[] tiles = this.animal.toArray();
-            Tile temp;
-            for(int i = 0; i < tiles.length; i++){
-                temp = (Tile) tiles[i];
-                if(!p.animal.contains(temp))
-                    return false;
-            }
-            return true;
+            return this.animal.equals(p.animal);
         }
         return false;
     }
     
+    /**
+    Returns the key of this polyform, which is the XOR of the keys of its tiles (see ZobristKeys).
+    @return the key of the animal, which is 0 if it is empty
+    */
+    public long getKey(){
+        return ZobristKeys.of(plane, animal);
+    }
+
     @Override
     public int hashCode(){
-        int code = 0;
-        Tile[] tiles = new Tile[animal.size()];
-        tiles = animal.toArray(tiles);
-        
-        for(int i = 0; i < tiles.length; i++){
-            code += Integer.parseInt(String.format("%d%d", tiles[i].ringNum, tiles[i].ringPos));
-        }
-        
-        return code;
+        return Long.hashCode(getKey());
     }
     
     /**
@@ -280,53 +370,60 @@ public class Polyform{
     @return the number of tiles that are in the polyform
     */
     public int size(){
-        return (animal == null ? 0 : animal.size());
+        return animal.cardinality();
     }
     
     /**
     Creates a Polyform represented by the given file. The file should be formatted as one tile per line, 
     each line containing only "ringNum ringPos" as integers.
     @param the name of the file that will be read to make a polyform. If null, an empty polyform will be made.
+    @param plane the tessellation that the polyform is in
     @return the polyform represented by the given file
     @throws IllegalArgumentException if the fileName cannot make a valid polyform unless the file fails to create
     */
-    public static Polyform makePolyform(String fileName){
+    public static Polyform makePolyform(String fileName, Tessellation plane){
         if(fileName == null)
-            return new Polyform(new HashSet<Tile>());
+            return new Polyform(plane, new TileSet());
         
         File file = null;
         try{
             file = new File(fileName);
         }
         catch(Exception e){
-            return new Polyform(new HashSet<Tile>());
+            return new Polyform(plane, new TileSet());
         }
-        return makePolyform(file);
+        return makePolyform(file, plane);
     }
     
     /**
     Creates a Polyform represented by the given file. The file should be formatted as one tile per line, 
-    each line containing only "ringNum ringPos" as integers.
+    each line containing only "ringNum ringPos" as integers. Tiles that are not in the tessellation are left out,
+    and a lazy tessellation first gets the ring of each tile.
     @param the file that will be read to make a polyform.
+    @param plane the tessellation that the polyform is in
     @return the polyform represented by the given file, or an empty polyform if the file is invalid.
     */
-    public static Polyform makePolyform(File file){
-        HashSet<Tile> tiles = new HashSet<>();
+    public static Polyform makePolyform(File file, Tessellation plane){
+        Polyform polyform = new Polyform(plane, new TileSet());
         try{
             Scanner scanner = new Scanner(file);
             int ringNum;
             int ringPos;
+            Tile tile;
             while(scanner.hasNext()){
                 ringNum = scanner.nextInt();
                 ringPos = scanner.nextInt();
-                tiles.add(new Tile(ringNum, ringPos));
+                plane.ensureRing(ringNum);
+                tile = plane.getTile(ringNum, ringPos);
+                if(tile != null)
+                    polyform.add(tile);
             }
             scanner.close();
         }
         catch(Exception e){
             ;
         }
-        return new Polyform(tiles);
+        return polyform;
     }
     
     /**
@@ -345,7 +442,7 @@ public class Polyform{
             }
             writer = new PrintWriter(file);
             writer.printf("%d %d %d\n", tessellation.p, tessellation.q, tessellation.rings);
-            for(Tile tile : animal){
+            for(Tile tile : getTiles()){
                 writer.printf("%d %d\n", tile.ringNum, tile.ringPos);
             }
             writer.flush();
@@ -362,15 +459,38 @@ public class Polyform{
     }
     
     /**
-    Accessor for the hashset.
-    @return the set of tiles in the polyform.
+    Accessor for the set of tiles.
+    @return the absolute indices of the tiles in the polyform.
     */
-    public HashSet<Tile> getAnimal(){
+    public TileSet getAnimal(){
         return animal;
     }
     
     /**
-    Functions identically to HashSet.contains()
+    Adds a tile to the polyform.
+    @param tile the tile that will be added
+    @return true if and only if the tile was not already in the polyform
+    @throws IllegalArgumentException if the tile is not in the tessellation
+    */
+    public boolean add(Tile tile){
+        int id = plane.indexOf(tile);
+        if(id < 0)
+            throw new IllegalArgumentException(tile + " is not in the tessellation");
+        return animal.add(id);
+    }
+    
+    /**
+    Removes a tile from the polyform.
+    @param tile the tile that will be removed
+    @return true if and only if the tile was in the polyform
+    */
+    public boolean remove(Tile tile){
+        int id = plane.indexOf(tile);
+        return id >= 0 && animal.remove(id);
+    }
+    
+    /**
+    Returns true if and only if the given Tile is in the polyform.
     Note that only one Tile in a MegaTile needs to be in the polyform for this to be considered true.
     @param tile the tile that will be checked for presence in the polyform
     @return true if and only if the given Tile is in the polyform
@@ -378,10 +498,11 @@ public class Polyform{
     public boolean contains(Tile tile){
         if(tile instanceof MegaTile mega){
             for(Tile t : mega.getAll())
-                if(animal.contains(t))
+                if(contains(t))
                     return true;
             return false;
         }
-        else return animal.contains(tile);
+        int id = plane.indexOf(tile);
+        return id >= 0 && animal.contains(id);
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,250 @@
+package megl.polyforms;
+
+import java.io.PrintWriter;
+import java.util.Arrays;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+
+/**
+Counts the polyforms of a tessellation by their number of tiles and holes, without keeping any of them.
+Every polyform containing the tile (1,0) is made once by PolyformEnumerator, and holes are counted from the Euler
+characteristic (see EulerHoleCounter). These are the rooted polyforms, and in the square and hexagonal tessellations there
+are n times as many rooted polyforms of n tiles as there are fixed ones, since each tile of a fixed polyform can be moved onto the root.
+Free polyforms, the ones that no isometry of the tessellation maps onto each other, are counted from the rooted ones:
+a free polyform of n tiles with s symmetries (see CanonicalForm.symmetries) has 2pn/s rooted copies, so the number of
+free polyforms is the sum of s over the rooted polyforms, divided by 2pn.
+Each thread counts into its own histograms of longs, which are added together at the end, so nothing is made per polyform.
+*/
+public class PolyformCensus {
+    /**
+    The tessellation whose polyforms are counted.
+    */
+    final Tessellation plane;
+
+    /**
+    The compact tessellation that is searched.
+    */
+    final CompactTessellation compact;
+
+    /**
+    The vertices and edges of the tessellation, for counting holes and symmetries.
+    */
+    final TessellationComplex complex;
+
+    /**
+    The largest number of tiles in a polyform that is counted.
+    */
+    final int maxTiles;
+
+    /**
+    The number of rooted polyforms with each number of tiles and holes, or null before the census is taken.
+    */
+    long[][] rooted;
+
+    /**
+    The sum of the symmetries of the rooted polyforms with each number of tiles and holes, or null if free polyforms
+    were not counted.
+    */
+    long[][] symmetries;
+
+    /**
+    The number of polyforms that were made.
+    */
+    long visited;
+
+    /**
+    Sets up a census of the polyforms with up to the given number of tiles. A lazy tessellation first gets every ring
+    they can reach, plus one more.
+    @param plane the tessellation whose polyforms are counted
+    @param maxTiles the largest number of tiles in a polyform that is counted
+    @throws IllegalArgumentException if maxTiles is less than 1, or the tessellation has too few rings for every polyform
+    with maxTiles tiles to stay out of its outermost ring
+    */
+    public PolyformCensus(Tessellation plane, int maxTiles){
+        if(maxTiles < 1)
+            throw new IllegalArgumentException("can't have polyform with no tiles");
+        if(plane.isLazy())
+            plane.ensureRing(maxTiles + 1);
+        this.plane = plane;
+        this.compact = plane.getCompact();
+        if(compact.rings <= maxTiles)
+            throw new IllegalArgumentException(String.format("counting polyforms of %d tiles needs %d rings, but the tessellation has %d",
+                    maxTiles, maxTiles + 1, compact.rings));
+        this.complex = new TessellationComplex(plane);
+        this.maxTiles = maxTiles;
+    }
+
+    /**
+    Counts every polyform with up to maxTiles tiles.
+    @param threads the number of threads that search at once. With one thread, the search runs on the calling thread
+    @param free whether to count free polyforms as well, which takes longer
+    @throws IllegalArgumentException if threads is less than 1
+    */
+    public void count(int threads, boolean free){
+        if(threads < 1)
+            throw new IllegalArgumentException("at least one thread is needed to search");
+        ConcurrentLinkedQueue<Histogram> histograms = new ConcurrentLinkedQueue<Histogram>();
+        if(threads == 1){
+            Histogram histogram = new Histogram(this, free);
+            histograms.add(histogram);
+            visited = new PolyformEnumerator(compact, 1, maxTiles, new EulerHoleCounter(complex)).enumerate(histogram);
+        }
+        else {
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try{
+                visited = new ParallelPolyformEnumerator(compact, 1, maxTiles, () -> new EulerHoleCounter(complex),
+                        PolyformFinder.SPLIT_DEPTH, pool).enumerate(() -> {
+                            Histogram histogram = new Histogram(this, free);
+                            histograms.add(histogram);
+                            return histogram;
+                        });
+            }
+            finally{
+                pool.shutdown();
+            }
+        }
+        rooted = new long[maxTiles + 1][0];
+        symmetries = (free ? new long[maxTiles + 1][0] : null);
+        for(Histogram histogram : histograms){
+            add(rooted, histogram.rooted);
+            if(free)
+                add(symmetries, histogram.symmetries);
+        }
+    }
+
+    /**
+    Adds the counts of one histogram into another, making rows longer where needed.
+    @param total the histogram that is added to
+    @param counts the histogram that is added
+    */
+    private static void add(long[][] total, long[][] counts){
+        for(int tiles = 0; tiles < total.length; tiles++){
+            if(total[tiles].length < counts[tiles].length)
+                total[tiles] = Arrays.copyOf(total[tiles], counts[tiles].length);
+            for(int holes = 0; holes < counts[tiles].length; holes++)
+                total[tiles][holes] += counts[tiles][holes];
+        }
+    }
+
+    /**
+    Returns the number of polyforms that were made, which is the number of rooted polyforms of every size.
+    @return the number of polyforms visited
+    */
+    public long getVisited(){
+        return visited;
+    }
+
+    /**
+    Returns the most holes that a counted polyform with the given number of tiles has.
+    @param tiles the number of tiles
+    @return the most holes, or -1 if there are no polyforms with that many tiles
+    @throws IllegalStateException if the census has not been taken
+    */
+    public int getMaxHoles(int tiles){
+        if(rooted == null)
+            throw new IllegalStateException("the polyforms have not been counted");
+        if(tiles < 1 || tiles > maxTiles)
+            return -1;
+        for(int holes = rooted[tiles].length - 1; holes >= 0; holes--)
+            if(rooted[tiles][holes] > 0)
+                return holes;
+        return -1;
+    }
+
+    /**
+    Returns the number of polyforms with the given number of tiles and holes that contain the tile (1,0).
+    @param tiles the number of tiles
+    @param holes the number of holes
+    @return the number of rooted polyforms
+    @throws IllegalStateException if the census has not been taken
+    */
+    public long getRooted(int tiles, int holes){
+        if(rooted == null)
+            throw new IllegalStateException("the polyforms have not been counted");
+        if(tiles < 1 || tiles > maxTiles || holes < 0 || holes >= rooted[tiles].length)
+            return 0;
+        return rooted[tiles][holes];
+    }
+
+    /**
+    Returns the number of free polyforms with the given number of tiles and holes.
+    @param tiles the number of tiles
+    @param holes the number of holes
+    @return the number of polyforms that no isometry of the tessellation maps onto each other
+    @throws IllegalStateException if free polyforms were not counted
+    */
+    public long getFree(int tiles, int holes){
+        if(symmetries == null)
+            throw new IllegalStateException("free polyforms have not been counted");
+        if(tiles < 1 || tiles > maxTiles || holes < 0 || holes >= symmetries[tiles].length)
+            return 0;
+        return symmetries[tiles][holes]/(2L*compact.p*tiles);
+    }
+
+    /**
+    Writes the census as CSV, with a header line and then a line for each number of tiles and holes that has polyforms.
+    The columns are tiles, holes, rooted and, if they were counted, free.
+    @param out where the CSV is written
+    @throws IllegalStateException if the census has not been taken
+    */
+    public void writeCsv(PrintWriter out){
+        if(rooted == null)
+            throw new IllegalStateException("the polyforms have not been counted");
+        out.println(symmetries == null ? "tiles,holes,rooted" : "tiles,holes,rooted,free");
+        for(int tiles = 1; tiles <= maxTiles; tiles++)
+            for(int holes = 0; holes < rooted[tiles].length; holes++){
+                if(rooted[tiles][holes] == 0)
+                    continue;
+                if(symmetries == null)
+                    out.printf("%d,%d,%d%n", tiles, holes, rooted[tiles][holes]);
+                else
+                    out.printf("%d,%d,%d,%d%n", tiles, holes, rooted[tiles][holes], getFree(tiles, holes));
+            }
+        out.flush();
+    }
+
+    /**
+    Counts the polyforms visited by one thread.
+    */
+    static final class Histogram implements PolyformVisitor {
+        /**
+        The number of polyforms with each number of tiles and holes.
+        */
+        final long[][] rooted;
+
+        /**
+        The sum of the symmetries of the polyforms with each number of tiles and holes, or null if they are not counted.
+        */
+        final long[][] symmetries;
+
+        /**
+        Counts the symmetries of polyforms, or null if they are not counted.
+        */
+        final CanonicalForm forms;
+
+        /**
+        Makes empty histograms for one thread.
+        @param census the census the histograms are for
+        @param free whether to count the symmetries of each polyform
+        */
+        Histogram(PolyformCensus census, boolean free){
+            this.rooted = new long[census.maxTiles + 1][4];
+            this.symmetries = (free ? new long[census.maxTiles + 1][4] : null);
+            this.forms = (free ? new CanonicalForm(census.complex) : null);
+        }
+
+        @Override
+        public boolean visit(int[] tiles, int size, HoleEvaluator evaluator){
+            int holes = evaluator.holes();
+            if(holes >= rooted[size].length){ // rows only grow a few times
+                rooted[size] = Arrays.copyOf(rooted[size], 2*holes);
+                if(symmetries != null)
+                    symmetries[size] = Arrays.copyOf(symmetries[size], 2*holes);
+            }
+            rooted[size][holes]++;
+            if(forms != null)
+                symmetries[size][holes] += forms.symmetries(tiles, size);
+            return true;
+        }
+    }
+}
@@ -0,0 +1,234 @@
+package megl.polyforms;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+Finds the eccentricity of every tile of a polyform, which is the greatest number of steps between it and another tile of
+the polyform, along with the center (the tile of least eccentricity), the radius and the diameter.
+Steps can only be taken between tiles that share an edge and are both in the polyform, or optionally in one of its holes.
+    The tiles that can be walked on are first copied into a small adjacency structure of their own, so each search only
+        touches arrays the size of the polyform.
+    A breadth first search is run from every tile of the polyform, taking O(n) time each. The searches are split
+        across the threads of a ForkJoinPool, and each task reuses one distance array and queue for all of its searches.
+If several tiles have the least eccentricity, the one with the lowest index is the center.
+*/
+public class PolyformCenter {
+    /**
+    The number of searches that one task runs before it is split further.
+    */
+    static final int SOURCES_PER_TASK = 8;
+
+    /**
+    The indices of the tiles of the polyform, in ascending order.
+    */
+    final int[] tiles;
+
+    /**
+    The eccentricity of each tile of the polyform, in the same order as tiles.
+    */
+    final int[] eccentricities;
+
+    /**
+    The index of the tile of least eccentricity.
+    */
+    final int center;
+
+    /**
+    The least eccentricity of any tile.
+    */
+    final int radius;
+
+    /**
+    The greatest eccentricity of any tile.
+    */
+    final int diameter;
+
+    /**
+    The index of each tile that can be walked on, by local number. The polyform's tiles come first,
+    so local tile i < tiles.length is tiles[i], followed by the tiles of its holes if they can be walked on.
+    */
+    private final int[] walkable;
+
+    /**
+    The start of each walkable tile's neighbors in localNeighbors, by local number. Has one more entry than there are walkable tiles.
+    */
+    private final int[] localOffsets;
+
+    /**
+    The local numbers of every walkable tile's walkable neighbors, grouped by tile.
+    */
+    private final int[] localNeighbors;
+
+    /**
+    Finds the center of the given polyform using the common pool.
+    @param plane the compact tessellation the polyform is in
+    @param animal the indices of the tiles of the polyform
+    @param acrossHoles whether paths can pass through the polyform's holes
+    @throws IllegalArgumentException if the polyform is empty or not connected
+    */
+    public PolyformCenter(CompactTessellation plane, int[] animal, boolean acrossHoles){
+        this(plane, animal, acrossHoles, ForkJoinPool.commonPool());
+    }
+
+    /**
+    Finds the center of the given polyform.
+    @param plane the compact tessellation the polyform is in
+    @param animal the indices of the tiles of the polyform
+    @param acrossHoles whether paths can pass through the polyform's holes
+    @param pool the pool that runs the searches
+    @throws IllegalArgumentException if the polyform is empty or not connected
+    */
+    public PolyformCenter(CompactTessellation plane, int[] animal, boolean acrossHoles, ForkJoinPool pool){
+        if(animal == null || animal.length == 0)
+            throw new IllegalArgumentException("an empty polyform has no center");
+        tiles = Arrays.stream(animal).sorted().distinct().toArray();
+
+        ArrayList<int[]> holes = (acrossHoles ? Polyform.getHoles(plane, tiles) : new ArrayList<int[]>());
+        int count = tiles.length;
+        for(int[] hole : holes)
+            count += hole.length;
+        int[] global = Arrays.copyOf(tiles, count); // global index of each local number
+        count = tiles.length;
+        for(int[] hole : holes)
+            for(int id : hole)
+                global[count++] = id;
+        walkable = global;
+
+        int[] sorted = global.clone(); // used to find local numbers by binary search
+        Arrays.sort(sorted);
+        int[] localOf = new int[sorted.length];
+        for(int i = 0; i < global.length; i++)
+            localOf[Arrays.binarySearch(sorted, global[i])] = i;
+
+        localOffsets = new int[global.length + 1];
+        int[] neighbors = new int[global.length * plane.p];
+        int edges = 0;
+        int at;
+        for(int i = 0; i < global.length; i++){
+            for(int k = 0; k < plane.degree(global[i]); k++){
+                at = Arrays.binarySearch(sorted, plane.neighbor(global[i], k));
+                if(at >= 0)
+                    neighbors[edges++] = localOf[at];
+            }
+            localOffsets[i+1] = edges;
+        }
+        localNeighbors = Arrays.copyOf(neighbors, edges);
+
+        eccentricities = new int[tiles.length];
+        pool.invoke(new SearchTask(0, tiles.length));
+
+        int best = 0;
+        int worst = 0;
+        for(int i = 0; i < tiles.length; i++){
+            if(eccentricities[i] < 0)
+                throw new IllegalArgumentException("the polyform is not connected");
+            if(eccentricities[i] < eccentricities[best])
+                best = i;
+            if(eccentricities[i] > eccentricities[worst])
+                worst = i;
+        }
+        center = tiles[best];
+        radius = eccentricities[best];
+        diameter = eccentricities[worst];
+    }
+
+    /**
+    Runs a breadth first search from one tile of the polyform over the walkable tiles.
+    @param source the local number of the tile the search starts from
+    @param distance scratch space with one entry per walkable tile
+    @param queue scratch space with one entry per walkable tile
+    @return the greatest distance to a tile of the polyform, or -1 if some tile of the polyform could not be reached
+    */
+    private int eccentricity(int source, int[] distance, int[] queue){
+        Arrays.fill(distance, -1);
+        distance[source] = 0;
+        queue[0] = source;
+        int size = 1;
+        int reached = 1; // tiles of the polyform that have been reached
+        int farthest = 0;
+        int tile, next;
+        for(int head = 0; head < size; head++){
+            tile = queue[head];
+            for(int k = localOffsets[tile]; k < localOffsets[tile+1]; k++){
+                next = localNeighbors[k];
+                if(distance[next] < 0){
+                    distance[next] = distance[tile] + 1;
+                    queue[size++] = next;
+                    if(next < tiles.length){
+                        reached++;
+                        farthest = distance[next];
+                    }
+                }
+            }
+        }
+        return (reached == tiles.length ? farthest : -1);
+    }
+
+    /**
+    Splits a range of sources in half until it is at most SOURCES_PER_TASK long, then searches from each of them.
+    */
+    private class SearchTask extends RecursiveAction {
+        private static final long serialVersionUID = 1L;
+
+        final int from;
+        final int to;
+
+        SearchTask(int from, int to){
+            this.from = from;
+            this.to = to;
+        }
+
+        @Override
+        protected void compute(){
+            if(to - from <= SOURCES_PER_TASK){
+                int[] distance = new int[walkable.length];
+                int[] queue = new int[walkable.length];
+                for(int source = from; source < to; source++)
+                    eccentricities[source] = eccentricity(source, distance, queue);
+                return;
+            }
+            int mid = (from + to) >>> 1;
+            invokeAll(new SearchTask(from, mid), new SearchTask(mid, to));
+        }
+    }
+
+    /**
+    Returns the index of the tile of least eccentricity, choosing the lowest index among ties.
+    @return the index of the center tile
+    */
+    public int getCenter(){
+        return center;
+    }
+
+    /**
+    Returns the least eccentricity of any tile of the polyform.
+    @return the radius of the polyform
+    */
+    public int getRadius(){
+        return radius;
+    }
+
+    /**
+    Returns the greatest eccentricity of any tile of the polyform, which is the most steps needed between two of its tiles.
+    @return the diameter of the polyform
+    */
+    public int getDiameter(){
+        return diameter;
+    }
+
+    /**
+    Returns the eccentricity of a tile of the polyform.
+    @param id the index of a tile of the polyform
+    @return the greatest distance from the tile to another tile of the polyform
+    @throws IllegalArgumentException if the tile is not part of the polyform
+    */
+    public int getEccentricity(int id){
+        int at = Arrays.binarySearch(tiles, id);
+        if(at < 0)
+            throw new IllegalArgumentException("tile " + id + " is not part of the polyform");
+        return eccentricities[at];
+    }
+}
@@ -22,7 +22,6 @@ import java.awt.FlowLayout;
 import java.io.File;
 
 import java.util.Scanner;
-import java.util.HashSet;
 import java.util.ArrayList;
 
 //import java.io.File;
@@ -39,7 +38,8 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     int q;
     
     /**
-    The ring of the tessellation that is generated.
+    The number of rings of the tessellation that are generated when it is made.
+    The tessellation is lazy, so more rings are added as the view or polyform reaches them.
     */
     int rings;
     
@@ -53,6 +53,12 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     */
     Tessellation tessellation;
     
+    /**
+    Keeps the hole count and connectivity of the polyform up to date as tiles are toggled.
+    Remade by recalcPolyformStats() whenever the polyform or tessellation is replaced.
+    */
+    HoleTracker holeTracker;
+    
     /**
     The tile used to orient the display.
     */
@@ -171,17 +177,10 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
         this.p = p;
         this.q = q;
         this.rings = rings;
-        tessellation = new Tessellation(p, q, rings);
+        tessellation = new Tessellation(p, q, rings, true);
         centerTile = tessellation.getTile(0, 0);
         highlightCenter = centerTile;
-        Polyform tempP = Polyform.makePolyform(fileName);
-        this.polyform = new Polyform(tessellation);
-        Tile temp;
-        for(Tile t : tempP.animal){
-            temp = tessellation.getTile(t.ringNum, t.ringPos);
-            if(temp != null)
-                polyform.animal.add(temp);
-        }
+        this.polyform = Polyform.makePolyform(fileName, tessellation);
         initializeDisplay();
     }
     
@@ -475,7 +474,7 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
         
         Tile[] temp;
         for(int i = 1; i <= 2; i++){ // calculates firsts and lasts for rows i removed from the center row
-            if(centerTile.ringNum + i <= rings){
+            if(tessellation.ensureRing(centerTile.ringNum + i)){
                 temp = lasts[2+(i-1)].getNextRing();
                 firsts[2+i] = findNextPrimary(firsts[2+(i-1)].getNextRing()[0].getPreviousInRing(), false);
                 lasts[2+i] = findNextPrimary(temp[temp.length-1].getNextInRing(), true);
@@ -517,7 +516,7 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
         
         Tile[] temp;
         for(int i = 1; i <= 2; i++){ // calculates firsts and lasts for rows i removed from the center row
-            if(centerTile.ringNum + i <= rings){
+            if(tessellation.ensureRing(centerTile.ringNum + i)){
                 temp = lasts[2+(i-1)].getNextInRing().getNextRing();
                 firsts[2+i] = findNextPrimary(firsts[2+(i-1)].getPreviousInRing().getNextRing()[0], false);
                 lasts[2+i] = findNextPrimary(temp[temp.length-1].getNextInRing(), true);
@@ -637,11 +636,11 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
         Tile newHighlightCenter = null;
         switch(c1){
             case '1': //shifting up
-                if((c2 == '0' || c2 == '2') && centerTile.ringNum != rings){
+                if((c2 == '0' || c2 == '2') && tessellation.ensureRing(centerTile.ringNum + 1)){
                     if(p > 3 || !centerTile.wasPrimary || centerTile.ringNum == 0)
                         newViewCenter = centerTile.getNextRing()[0];
                 }
-                if((c2 == '1' || c2 == '2') && highlightCenter.ringNum != rings){
+                if((c2 == '1' || c2 == '2') && tessellation.ensureRing(highlightCenter.ringNum + 1)){
                     if(p > 3 || !centerTile.wasPrimary || centerTile.ringNum == 0)
                         newHighlightCenter = highlightCenter.getNextRing()[0];
                 }
@@ -730,14 +729,15 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
         if(tile == null){
             return;
         }
-        if(polyform.animal.contains(tile)){
-            polyform.animal.remove(tile);
+        if(polyform.contains(tile)){
+            polyform.remove(tile);
             tile.type = megl.polyforms.Type.EMPTY;
         }                                       //Note: these need the fully qualified name because of java.awt.Window.Type
         else {
-            polyform.animal.add(tile);
+            polyform.add(tile);
             tile.type = megl.polyforms.Type.ANIMAL;
         }
+        updateHoleTracker(tile);
         updateTopPanelText();
         if(centerTile.ringNum - 2 <= tile.ringNum || tile.ringNum <= centerTile.ringNum + 2) //these are the rings displayed in the original version, may need to be updated
             redrawCenter();
@@ -795,13 +795,13 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     private void replacePolyformAndTessellation(File file){
         Tessellation newTess = null;
         Polyform newPoly = null;
-        HashSet<Tile> tiles = new HashSet<>();
         try{
             Scanner scanner = new Scanner(file);
             int p = scanner.nextInt();
             int q = scanner.nextInt();
             int rings = scanner.nextInt();
-            newTess = new Tessellation(p,q,rings);
+            newTess = new Tessellation(p,q,rings,true);
+            newPoly = new Polyform(newTess);
             int ringNum;
             int ringPos;
             Tile temp;
@@ -811,11 +811,10 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
                 temp = newTess.getTile(ringNum, ringPos);
                 if(temp != null){
                     temp.type = megl.polyforms.Type.ANIMAL;
-                    tiles.add(temp);
+                    newPoly.add(temp);
                 }
             }
             scanner.close();
-            newPoly = new Polyform(tiles);
         }
         catch(Exception e){
             System.err.println("Invalid file: " + file);
@@ -845,7 +844,7 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     private void setTessellation(int p, int q, int rings){
         if(p < 3 || q < 3 || rings < 1)
             return;
-        tessellation = new Tessellation(p, q, rings);
+        tessellation = new Tessellation(p, q, rings, true);
         polyform = new Polyform(tessellation);
         this.p = p;
         this.q = q;
@@ -961,24 +960,49 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     }
     
     /**
-    Recomputes assorted stats for the polyform and updates their text appropriately.
+    Recomputes assorted stats for the polyform from scratch and updates their text appropriately.
+    The hole tracker is remade with the compact copy of the tessellation, after making sure a ring surrounds the polyform.
     */
     private void recalcPolyformStats(){
+        Polyform.surround(tessellation, polyform.animal);
+        CompactTessellation compact = tessellation.getCompact();
+        holeTracker = new HoleTracker(compact, polyform.getIndices(compact));
         updateHoleStatus();
         updateConnectivityStatus();
     }
     
     /**
-    Recomputes where holes are in the polyform and updates the list of them.
+    Updates the hole tracker and the stats after a tile was toggled. The tracker only does work near the tile,
+    unless the tile is on the edge of its tessellation, in which case the stats are recomputed with a bigger one.
+    @param tile the tile that was toggled
+    */
+    private void updateHoleTracker(Tile tile){
+        CompactTessellation compact = (holeTracker == null ? null : holeTracker.getPlane());
+        int id = (compact == null ? -1 : compact.index(tile));
+        if(id < 0 || compact.isBoundary(id)){
+            recalcPolyformStats();
+            return;
+        }
+        if(polyform.contains(tile))
+            holeTracker.add(id);
+        else
+            holeTracker.remove(id);
+        updateHoleStatus();
+        updateConnectivityStatus();
+    }
+    
+    /**
+    Updates the list of holes in the polyform from the hole tracker.
     */
     private void updateHoleStatus(){
-        ArrayList<HashSet<Tile>> holes = Polyform.getHoles(tessellation, polyform.animal);
+        CompactTessellation compact = holeTracker.getPlane();
+        ArrayList<int[]> holes = holeTracker.getHoles();
         String text = String.format("<html><body>The polyform contains %d holes:<br>", holes.size());
         String temp = null;
         int lineLength = 0;
         int i = 0;
-        for(HashSet<Tile> hole : holes){
-            temp = hole.toString();
+        for(int[] hole : holes){
+            temp = holeToString(compact, hole);
             lineLength += temp.length() + (++i == holes.size() ? 0 : 2);//accounts for comma and space
             text += temp + (i == holes.size() ? "" : "; ");
             if(lineLength > 50){
@@ -991,10 +1015,23 @@ public class PolyformDisplayer extends JFrame implements ActionListener {
     }
     
     /**
-    Recomputes whether or not the polyform is connected.
+    Creates a String listing the tiles of a hole, formatted the same as a set of tiles.
+    @param compact the compact tessellation the hole is in
+    @param hole the indices of the tiles in the hole
+    @return a String of form [(ringNum,ringPos), ...]
+    */
+    private String holeToString(CompactTessellation compact, int[] hole){
+        String text = "[";
+        for(int i = 0; i < hole.length; i++)
+            text += compact.toTile(hole[i]) + (i + 1 == hole.length ? "" : ", ");
+        return text + "]";
+    }
+    
+    /**
+    Updates whether or not the polyform is connected from the hole tracker.
     */
     private void updateConnectivityStatus(){
-        if(Polyform.isConnected(tessellation, polyform.animal))
+        if(holeTracker.isConnected())
             polyformStats[1].setText("Connected: true");
         else
             polyformStats[1].setText("Connected: false");
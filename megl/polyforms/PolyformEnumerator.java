@@ -0,0 +1,280 @@
+package megl.polyforms;
+
+/**
+Makes every polyform that contains a given root tile and has up to a given number of tiles, each exactly once,
+using Redelmeier's algorithm on the graph of tiles that share an edge.
+Every polyform is grown from the root by adding one tile at a time from a set of untried tiles:
+    At first, only the root is untried.
+    A tile is taken out of the untried set and added to the polyform. Then every polyform containing it is made by
+        searching the untried tiles that are left, together with the neighbors of the new tile that have not been seen yet.
+        Afterwards the tile is removed from the polyform, but it stays seen, so no later polyform at this level has it.
+    Once the untried set is empty, the tiles that were first seen at this level are forgotten again.
+Since each tile can only be added at one point of the search, no polyform is made twice and no set of visited polyforms
+is needed. The untried sets of all levels share their tails as linked lists in one stack of nodes, so the search
+uses O(np) memory for polyforms of n tiles, besides one flag per tile of the tessellation.
+Unlike PolyformFinder.extendAnimal, tiles can be added next to any tile of the polyform, not just the last one.
+The search below any polyform only depends on the polyform, the tiles that have been seen and the untried tiles,
+so it can be cut off and handed to another enumerator as a Subtree (see ParallelPolyformEnumerator).
+*/
+public class PolyformEnumerator {
+    /**
+    The compact tessellation that is searched.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The tile every polyform contains.
+    */
+    final int root;
+
+    /**
+    The largest number of tiles in a polyform.
+    */
+    final int maxTiles;
+
+    /**
+    Counts the holes of the current polyform.
+    */
+    final HoleEvaluator evaluator;
+
+    /**
+    Whether each tile has been seen, meaning it is in the polyform, untried, or was already tried at some level.
+    */
+    final boolean[] seen;
+
+    /**
+    The tiles of the current polyform, in the order they were added.
+    */
+    final int[] animal;
+
+    /**
+    The tile of each node. Nodes below seenNodes hold the tiles that were seen before the search started,
+    nodes from there to baseNodes hold the untried list it started with, and later nodes belong to levels of the search.
+    */
+    final int[] nodeTiles;
+
+    /**
+    The node after each node of the untried lists, or -1 at the end of a list.
+    */
+    final int[] nodeNext;
+
+    /**
+    The next untried node at each level, or -1 once the level's untried list has been searched.
+    Level i chooses the tile at position i of the polyform.
+    */
+    final int[] cursors;
+
+    /**
+    The first node that was made for each level.
+    */
+    final int[] levelStarts;
+
+    /**
+    The number of nodes holding tiles that were seen before the current search started.
+    */
+    int seenNodes;
+
+    /**
+    The number of nodes made before the first level of the current search.
+    */
+    int baseNodes;
+
+    /**
+    If not null, decides which subtrees are handed off instead of searched.
+    */
+    Splitter splitter;
+
+    /**
+    Sets up a search of the polyforms containing the root.
+    @param plane the compact tessellation that is searched
+    @param root the index of the tile every polyform contains
+    @param maxTiles the largest number of tiles in a polyform
+    @param evaluator counts the holes of the polyforms, and is given each tile as it is added and removed. Must be empty
+    @throws IllegalArgumentException if maxTiles is less than 1 or the root is not in the tessellation
+    */
+    public PolyformEnumerator(CompactTessellation plane, int root, int maxTiles, HoleEvaluator evaluator){
+        if(maxTiles < 1)
+            throw new IllegalArgumentException("can't have polyform with no tiles");
+        if(root < 0 || root >= plane.size())
+            throw new IllegalArgumentException("the root " + root + " is not in the tessellation");
+        this.plane = plane;
+        this.root = root;
+        this.maxTiles = maxTiles;
+        this.evaluator = evaluator;
+        this.seen = new boolean[plane.size()];
+        this.animal = new int[maxTiles];
+        this.nodeTiles = new int[3*(1 + maxTiles*plane.p)]; // seen tiles, the untried list, and the levels of the search
+        this.nodeNext = new int[nodeTiles.length];
+        this.cursors = new int[maxTiles + 1];
+        this.levelStarts = new int[maxTiles + 1];
+    }
+
+    /**
+    Gives every polyform containing the root with up to maxTiles tiles to the visitor, except those made by adding tiles
+    to a polyform the visitor chose not to extend.
+    @param visitor examines each polyform
+    @return the number of polyforms that were visited
+    */
+    public long enumerate(PolyformVisitor visitor){
+        return enumerate(rootSubtree(root), visitor);
+    }
+
+    /**
+    Returns the whole search, which starts with no tiles in the polyform and only the root untried.
+    @param root the index of the tile every polyform contains
+    @return the subtree containing every polyform with the root
+    */
+    static Subtree rootSubtree(int root){
+        return new Subtree(new int[0], new int[]{root}, new int[]{root});
+    }
+
+    /**
+    Gives every polyform of the subtree to the visitor, leaving this enumerator and its evaluator as they were.
+    The polyform the subtree starts from is not visited again.
+    @param subtree the polyform to extend, the tiles seen so far, and the untried tiles
+    @param visitor examines each polyform
+    @return the number of polyforms that were visited
+    */
+    long enumerate(Subtree subtree, PolyformVisitor visitor){
+        int nodes = 0;
+        for(int tile : subtree.seen){
+            seen[tile] = true;
+            nodeTiles[nodes] = tile;
+            nodeNext[nodes] = -1;
+            nodes++;
+        }
+        seenNodes = nodes;
+        int head = -1;
+        for(int i = subtree.untried.length - 1; i >= 0; i--){
+            nodeTiles[nodes] = subtree.untried[i];
+            nodeNext[nodes] = head;
+            head = nodes++;
+        }
+        baseNodes = nodes;
+        int base = subtree.prefix.length;
+        for(int i = 0; i < base; i++){
+            animal[i] = subtree.prefix[i];
+            evaluator.push(animal[i]);
+        }
+
+        long visited = 0;
+        int level = base;
+        cursors[level] = head;
+        int node, tile, next;
+        while(true){
+            if(cursors[level] < 0){ // take back the tile chosen by the previous level
+                if(level == base)
+                    break;
+                for(int k = levelStarts[level]; k < nodes; k++)
+                    seen[nodeTiles[k]] = false;
+                nodes = levelStarts[level];
+                level--;
+                evaluator.pop();
+                continue;
+            }
+            node = cursors[level];
+            cursors[level] = nodeNext[node];
+            tile = nodeTiles[node];
+            animal[level] = tile;
+            evaluator.push(tile);
+            visited++;
+            if(!visitor.visit(animal, level + 1, evaluator) || level + 1 == maxTiles){
+                evaluator.pop();
+                continue;
+            }
+            levelStarts[level + 1] = nodes;
+            head = cursors[level]; // the untried tiles that are left come after the new ones
+            for(int j = 0; j < plane.degree(tile); j++){
+                next = plane.neighbor(tile, j);
+                if(seen[next])
+                    continue;
+                seen[next] = true;
+                nodeTiles[nodes] = next;
+                nodeNext[nodes] = head;
+                head = nodes++;
+            }
+            if(splitter != null && splitter.wantsSplit(level + 1)){
+                splitter.split(snapshot(level + 1, head, nodes));
+                for(int k = levelStarts[level + 1]; k < nodes; k++)
+                    seen[nodeTiles[k]] = false;
+                nodes = levelStarts[level + 1];
+                evaluator.pop();
+                continue;
+            }
+            level++;
+            cursors[level] = head;
+        }
+
+        for(int k = 0; k < seenNodes; k++)
+            seen[nodeTiles[k]] = false;
+        for(int i = 0; i < base; i++)
+            evaluator.pop();
+        return visited;
+    }
+
+    /**
+    Copies the state of the search below the current polyform.
+    @param size the number of tiles in the current polyform
+    @param head the first node of the untried list below it
+    @param nodes the number of nodes in use
+    */
+    private Subtree snapshot(int size, int head, int nodes){
+        int[] prefix = new int[size];
+        System.arraycopy(animal, 0, prefix, 0, size);
+        int[] seenTiles = new int[seenNodes + nodes - baseNodes];
+        System.arraycopy(nodeTiles, 0, seenTiles, 0, seenNodes);
+        System.arraycopy(nodeTiles, baseNodes, seenTiles, seenNodes, nodes - baseNodes);
+        int count = 0;
+        for(int node = head; node >= 0; node = nodeNext[node])
+            count++;
+        int[] untried = new int[count];
+        count = 0;
+        for(int node = head; node >= 0; node = nodeNext[node])
+            untried[count++] = nodeTiles[node];
+        return new Subtree(prefix, seenTiles, untried);
+    }
+
+    /**
+    The state of the search below one polyform, which is all that is needed to make every polyform in that part of the search.
+    */
+    static final class Subtree {
+        /**
+        The tiles of the polyform, in the order they were added.
+        */
+        final int[] prefix;
+
+        /**
+        Every tile that has been seen, including the tiles of the polyform and the untried tiles.
+        */
+        final int[] seen;
+
+        /**
+        The untried tiles, in the order they will be tried.
+        */
+        final int[] untried;
+
+        Subtree(int[] prefix, int[] seen, int[] untried){
+            this.prefix = prefix;
+            this.seen = seen;
+            this.untried = untried;
+        }
+    }
+
+    /**
+    Decides which parts of the search are handed off to be searched somewhere else.
+    */
+    interface Splitter {
+        /**
+        Returns true if the polyforms made by adding tiles to the current polyform should be handed off.
+        @param size the number of tiles in the current polyform
+        @return true to hand them off with split
+        */
+        boolean wantsSplit(int size);
+
+        /**
+        Takes the part of the search below the current polyform, which this enumerator then skips.
+        @param subtree the state of the search below the current polyform
+        */
+        void split(Subtree subtree);
+    }
+}
@@ -1,33 +1,183 @@
 package megl.polyforms;
 
-import java.util.HashSet;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Spliterator;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.atomic.AtomicReference;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Supplier;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 /**
 Contains static methods for finding a polyform with the most holes and fewest tiles,
 as well as utilities to that end.
 */
 public abstract class PolyformFinder {
+    
+    /**
+    The search below every polyform with fewer tiles than this is a separate task when searching with several threads.
+    */
+    static final int SPLIT_DEPTH = 3;
+
+    /**
+    The most keys the transposition table of a search that extends polyforms holds, unless it is given one.
+    */
+    public static final int DEFAULT_TABLE_CAPACITY = 1 << 22;
 
     /**
-    Stores every combination of tiles reached by the current searching method.
+    Makes every polyform containing the tile (1,0) with up to the given number of tiles to find the optimal one (see PolyformEnumerator).
+    Lazy tessellations first get every ring such a polyform can reach, plus one more. When the tessellation has that many rings,
+    holes are counted from the Euler characteristic of each polyform (see EulerHoleCounter), and otherwise by flooding.
+    Polyforms with as many holes and tiles as each other are told apart by their sorted tile indices, and the smallest is returned.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
+    */
+    public static TileSet findHoleyestAnimal(Tessellation plane, int tiles){
+        return findHoleyestAnimal(plane, tiles, 1);
+    }
+    
+    /**
+    Same as findHoleyestAnimal(Tessellation, int), but splits the search between the given number of threads
+    (see ParallelPolyformEnumerator). The result does not depend on the number of threads.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
+    */
+    public static TileSet findHoleyestAnimal(Tessellation plane, int tiles, int threads){
+        return searchHoleyestAnimal(plane, tiles, threads, true).getAnimal();
+    }
+    
+    /**
+    Makes every polyform containing the tile (1,0) with up to the given number of tiles, like findHoleyestAnimal(Tessellation, int, int),
+    and reports whether the result is proven optimal along with how many polyforms were made.
+    With branch and bound, a polyform is not extended when the most holes any extension of it can have (see Polyform.maxHoles)
+    is fewer than the best polyform so far has, or the same with no fewer tiles. This never changes the result.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @param bound whether to skip the extensions of polyforms that can't beat the best polyform so far
+    @return the polyform with the most holes, and if tied, fewest tiles, and how it was found
+    */
+    public static PolyformSearchResult searchHoleyestAnimal(Tessellation plane, int tiles, int threads, boolean bound){
+        return searchHoleyestAnimal(plane, tiles, threads, bound, null);
+    }
+    
+    /**
+    Same as searchHoleyestAnimal(Tessellation, int, int, boolean), but saves its progress to a checkpoint as it goes.
+    If the checkpoint was loaded from an earlier run of the same search, the units it has are skipped, and the result
+    is the same as if the search had never stopped. The number of polyforms visited counts the skipped units, but the number
+    pruned only counts this run.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @param bound whether to skip the extensions of polyforms that can't beat the best polyform so far
+    @param checkpoint where the progress of the search is saved, or null to not save it
+    @return the polyform with the most holes, and if tied, fewest tiles, and how it was found
+    @throws IllegalArgumentException if the checkpoint was saved by a different search
+    @throws java.io.UncheckedIOException if the checkpoint can't be written
+    */
+    public static PolyformSearchResult searchHoleyestAnimal(Tessellation plane, int tiles, int threads, boolean bound,
+            SearchCheckpoint checkpoint){
+        return searchHoleyestAnimal(plane, tiles, threads, bound, checkpoint, null);
+    }
+    
+    /**
+    Same as searchHoleyestAnimal(Tessellation, int, int, boolean, SearchCheckpoint), but only searches one slice of the search
+    (see SearchShard). Separate processes, each given a different shard of the same N, together search every polyform
+    without sharing anything, and ShardResult.merge combines their results into the result of the whole search.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @param bound whether to skip the extensions of polyforms that can't beat the best polyform the shard found so far
+    @param shard the slice of the search to search
+    @param checkpoint where the progress of the shard is saved, or null to not save it
+    @return the polyform with the most holes, and if tied, fewest tiles, that the shard found, and how it was found
+    @throws IllegalArgumentException if the checkpoint was saved by a different search or shard
+    @throws java.io.UncheckedIOException if the checkpoint can't be written
+    */
+    public static ShardResult searchShard(Tessellation plane, int tiles, int threads, boolean bound, SearchShard shard,
+            SearchCheckpoint checkpoint){
+        if(shard == null)
+            throw new IllegalArgumentException("a shard is needed to search one");
+        return (ShardResult) searchHoleyestAnimal(plane, tiles, threads, bound, checkpoint, shard); // a search with a shard returns its ShardResult
+    }
+    
+    /**
+    Makes the compact tessellation and hole evaluators for a search of the given tessellation, and searches it.
+    */
+    private static PolyformSearchResult searchHoleyestAnimal(Tessellation plane, int tiles, int threads, boolean bound,
+            SearchCheckpoint checkpoint, SearchShard shard){
+        if(plane.tessellation.size() == tiles)
+            throw new IllegalArgumentException("this many tiles will fill the entire plane, so it will never have a hole");
+        if(plane.isLazy())
+            plane.ensureRing(tiles + 1);
+        CompactTessellation compact = plane.getCompact();
+        Supplier<HoleEvaluator> evaluators;
+        if(compact.rings > tiles){ // no polyform reaches the outermost ring
+            TessellationComplex complex = new TessellationComplex(plane);
+            evaluators = () -> new EulerHoleCounter(complex);
+        }
+        else
+            evaluators = () -> new FloodHoleEvaluator(compact);
+        return searchHoleyestAnimal(compact, tiles, evaluators, threads, bound, checkpoint, shard);
+    }
+    
+    /**
+    Same as findHoleyestAnimal(Tessellation, int), but uses the older search that only extends each polyform
+    from the tile that was added to it last, so it misses some polyforms.
+    @param plane the Tessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles, of those that were searched
+    */
+    public static TileSet findHoleyestAnimalByExtension(Tessellation plane, int tiles){
+        return findHoleyestAnimalByExtension(plane, tiles, new TranspositionTable(extensionTableCapacity(plane.p, 1, tiles)));
+    }
+    
+    /**
+    Returns the capacity of a transposition table with room for every key a search that extends polyforms can add, up to DEFAULT_TABLE_CAPACITY,
+    so that small searches don't make a large table. Each polyform is reached by adding one of at most p neighbors to a polyform
+    that was reached before, starting once from each tile of the seed, so no more than seedTiles * (p + p^2 + ... + p^(tiles - seedTiles))
+    keys are added.
+    @param p the number of sides of each tile
+    @param seedTiles the number of tiles that the search starts with
+    @param tiles the number of tiles that you want in your polyforms
+    @return the number of keys to give the table
     */
-    static HashSet<HashSet<Tile>> reachedCombinations;
+    public static int extensionTableCapacity(int p, int seedTiles, int tiles){
+        long keys = 0, paths = seedTiles;
+        for(int added = seedTiles; added < tiles && keys < DEFAULT_TABLE_CAPACITY; added++){
+            paths *= p;
+            keys += paths;
+        }
+        return (int) Math.max(1, Math.min(keys, DEFAULT_TABLE_CAPACITY));
+    }
     
     /**
-    Iteratively makes every polyform with the given number of tiles (or possibly fewer) to find the optimal one.
+    Same as findHoleyestAnimalByExtension(Tessellation, int), but remembers the polyforms it has reached in the given table,
+    whose counts show how many polyforms were reached again and forgotten. A polyform that was forgotten is searched again
+    if it is reached again, so a table that is too small never skips a polyform that a larger one would search, but makes the
+    search slower. Since a polyform is only extended from the tile that was added to it last, searching it again from another
+    tile can reach polyforms that were not searched before, so the result can differ from that of a table that forgets nothing.
     @param plane the Tessellation that is being searched
     @param tiles the number of tiles that you want in your polyforms
-    @return the polyform with the most holes, and if tied, fewest tiles
+    @param table remembers the keys of the polyforms that were reached. It is cleared first
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles, of those that were searched
     */
-    public static HashSet<Tile> findHoleyestAnimal(Tessellation plane, int tiles){
+    public static TileSet findHoleyestAnimalByExtension(Tessellation plane, int tiles, TranspositionTable table){
         if(plane.tessellation.size() == tiles)
             throw new IllegalArgumentException("this many tiles will fill the entire plane, so it will never have a hole");
-        HashSet<Tile> animal = new HashSet<Tile>(tiles);
-        animal.add(plane.tessellation.get(1));
-        reachedCombinations = new HashSet<HashSet<Tile>>();
-        HashSet<Tile> temp = extendAnimal(plane, tiles, animal, plane.tessellation.get(1));
-        reachedCombinations = new HashSet<HashSet<Tile>>();
-        return temp;
+        Tile start = plane.tessellation.get(1);
+        TileSet animal = new TileSet();
+        animal.add(1);
+        table.clear();
+        return extendAnimal(plane, tiles, animal, ZobristKeys.key(start), start, table);
     }
     
     /**
@@ -38,30 +188,38 @@ public abstract class PolyformFinder {
     
     @param plane the Tessellation that is being worked in
     @param tiles the target number of tiles
-    @param animal the set of tiles in the tessellation that is already part of the animal
+    @param animal the absolute indices of the tiles in the tessellation that are already part of the animal
+    @param key the key of the animal
     @param expansionPoint the tile that was last added to the animal
+    @param reached remembers the keys of the combinations of tiles reached so far (see ZobristKeys)
     @return an animal with the most holes and fewest tiles
     */
-    @SuppressWarnings("unchecked")
-    private static HashSet<Tile> extendAnimal(Tessellation plane, int tiles, HashSet<Tile> animal, Tile expansionPoint){
+    private static TileSet extendAnimal(Tessellation plane, int tiles, TileSet animal, long key, Tile expansionPoint,
+            TranspositionTable reached){
         if(animal.size() == tiles || expansionPoint == null){
             return animal;
         }
         
-        HashSet<Tile>[] options = (HashSet<Tile>[]) new HashSet[plane.p];
+        TileSet[] options = new TileSet[plane.p];
         
-        HashSet<Tile> tempAnimal;
+        TileSet tempAnimal;
+        long tempKey;
+        Tile next;
+        int id;
         
         for(int i = 0; i < options.length; i++){
-            if(expansionPoint.adjacent[i] == null)
+            next = plane.getAdjacent(expansionPoint, i); // lazy tessellations grow here
+            if(next == null)
                 continue;
-            tempAnimal = (HashSet<Tile>) animal.clone();
-            tempAnimal.add(expansionPoint.adjacent[i]);
-            if(tempAnimal.size() > animal.size())
-                if(!reachedCombinations.contains(tempAnimal)){
-                    reachedCombinations.add(tempAnimal);
-                    options[i] = extendAnimal(plane, tiles, tempAnimal, expansionPoint.adjacent[i]);
-                }
+            id = plane.indexOf(next);
+            if(animal.contains(id))
+                continue;
+            tempKey = key ^ ZobristKeys.key(next);
+            if(reached.add(tempKey)){
+                tempAnimal = new TileSet(animal);
+                tempAnimal.add(id);
+                options[i] = extendAnimal(plane, tiles, tempAnimal, tempKey, next, reached);
+            }
         }
         
         int bestIndex = -1;
@@ -96,113 +254,563 @@ public abstract class PolyformFinder {
     }
     
     /**
-    WIP way to search for optimal structure, like a breadth first search
+    Same as findHoleyestAnimal(Tessellation, int), but searches a compact tessellation and represents polyforms
+    as sorted arrays of tile indices. Holes are counted by flooding.
+    @param plane the CompactTessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @return the indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
     */
-    public static HashSet<Tile> getHoleyest(Tessellation plane, int maxTiles){
-        HashSet<Tile> base = new HashSet<Tile>(1);
-        base.add(plane.tessellation.get(1));
-        
-        reachedCombinations = new HashSet<HashSet<Tile>>();
-        reachedCombinations.add(base);
-        
-        HashSet<HashSet<Tile>> nextCombinations = new HashSet<>();
-        HashSet<Tile> best = base;
-        for(int i = 1; i < maxTiles; i++){
-            for(HashSet<Tile> animal : reachedCombinations){
-                getAllExpansions(animal, nextCombinations);
-            }
-            reachedCombinations = nextCombinations;
-            nextCombinations = new HashSet<>();
-            best = findBest(best, reachedCombinations, plane);
-        }
-        
-        reachedCombinations = null;        
-        return best;
+    public static int[] findHoleyestAnimal(CompactTessellation plane, int tiles){
+        return findHoleyestAnimal(plane, tiles, 1);
+    }
+    
+    /**
+    Same as findHoleyestAnimal(CompactTessellation, int), but splits the search between the given number of threads.
+    @param plane the CompactTessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @return the indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
+    */
+    public static int[] findHoleyestAnimal(CompactTessellation plane, int tiles, int threads){
+        return searchHoleyestAnimal(plane, tiles, threads, true).tiles;
+    }
+    
+    /**
+    Same as searchHoleyestAnimal(Tessellation, int, int, boolean), but searches a compact tessellation. Holes are counted by flooding.
+    @param plane the CompactTessellation that is being searched
+    @param tiles the number of tiles that you want in your polyforms
+    @param threads the number of threads that search at once
+    @param bound whether to skip the extensions of polyforms that can't beat the best polyform so far
+    @return the polyform with the most holes, and if tied, fewest tiles, and how it was found
+    */
+    public static PolyformSearchResult searchHoleyestAnimal(CompactTessellation plane, int tiles, int threads, boolean bound){
+        if(plane.size() == tiles)
+            throw new IllegalArgumentException("this many tiles will fill the entire plane, so it will never have a hole");
+        return searchHoleyestAnimal(plane, tiles, () -> new FloodHoleEvaluator(plane), threads, bound, null, null);
     }
     
     /**
-    Helper for GetHoleyest. Finds every polyform that can be created by adding one tile to the polyform.
+    Makes every polyform containing tile 1, which is (1,0), with up to the given number of tiles, and returns the one
+    with the most holes and, if tied, fewest tiles and then smallest sorted indices.
+    @param plane the CompactTessellation that is being searched
+    @param tiles the largest number of tiles in a polyform
+    @param evaluators makes an empty HoleEvaluator for each thread
+    @param threads the number of threads that search at once. With one thread and no checkpoint, the search runs on the calling thread
+    @param bound whether to skip the extensions of polyforms that can't beat the best polyform so far
+    @param checkpoint where the progress of the search is saved, or null to not save it. The search is then split into tasks
+    down to SearchCheckpoint.CHECKPOINT_DEPTH, even with one thread
+    @param shard the slice of the search to search, or null for all of it. The search is then split into tasks
+    down to SearchShard.SHARD_DEPTH, even with one thread
+    @return the sorted indices of the tiles of the best polyform, and how it was found, which is a ShardResult if there is a shard
     */
-    private static void getAllExpansions(HashSet<Tile> base, HashSet<HashSet<Tile>> expansions){
-        HashSet<Tile> expanded;
-        for(Tile tile : base){
-            for(int i = 0; i < tile.adjacent.length; i++){
-                if(tile.adjacent[i] == null)
-                    continue;
-                expanded = new HashSet<>(base.size() + 1, 1);
-                expanded.addAll(base);
-                expanded.add(tile.adjacent[i]);
-                if(expanded.size() > base.size())
-                    expansions.add(expanded);
+    static PolyformSearchResult searchHoleyestAnimal(CompactTessellation plane, int tiles, Supplier<HoleEvaluator> evaluators,
+            int threads, boolean bound, SearchCheckpoint checkpoint, SearchShard shard){
+        if(threads < 1)
+            throw new IllegalArgumentException("at least one thread is needed to search");
+        HoleyestVisitor best = (bound ? new HoleyestVisitor(plane.p, plane.q, tiles) : new HoleyestVisitor());
+        long visited;
+        if(threads == 1 && checkpoint == null && shard == null)
+            visited = new PolyformEnumerator(plane, 1, tiles, evaluators.get()).enumerate(best);
+        else {
+            int splitDepth = SPLIT_DEPTH;
+            if(shard != null)
+                splitDepth = Math.max(splitDepth, SearchShard.SHARD_DEPTH + 1);
+            if(checkpoint != null){
+                splitDepth = Math.max(splitDepth, SearchCheckpoint.CHECKPOINT_DEPTH);
+                checkpoint.start(plane, tiles, bound, shard, best.best);
+            }
+            ForkJoinPool pool = new ForkJoinPool(threads);
+            try{
+                ParallelPolyformEnumerator enumerator = new ParallelPolyformEnumerator(plane, 1, tiles, evaluators, splitDepth, pool);
+                enumerator.checkpoint = checkpoint;
+                enumerator.shard = shard;
+                visited = enumerator.enumerate(best);
+            }
+            finally{
+                pool.shutdown();
+                if(checkpoint != null)
+                    checkpoint.stop();
             }
         }
+        Candidate result = best.best.get();
+        if(shard != null)
+            return new ShardResult(new int[]{plane.p, plane.q, plane.rings, tiles, (bound ? 1 : 0)}, shard,
+                    result.tiles, result.holes, visited, best.pruned.sum());
+        return new PolyformSearchResult(result.tiles, result.holes, plane.rings > tiles, visited, best.pruned.sum());
+    }
+    
+    /**
+    Same as findHoleyestAnimal(CompactTessellation, int), but treats polyforms that some rotation, reflection or translation
+    of the tessellation maps onto each other as the same, so only one copy of each free polyform is extended (see CanonicalForm).
+    Since only the first copy reached is extended, and only from the tile that was added last, the result can differ from
+    the one found when every copy is extended. The tessellation should have enough rings that no polyform searched reaches its outermost ring.
+    @param complex the tessellation that is being searched, with the neighbors of each tile in clockwise order
+    @param tiles the number of tiles that you want in your polyforms
+    @return the indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
+    */
+    public static int[] findHoleyestAnimal(TessellationComplex complex, int tiles){
+        CompactTessellation plane = complex.plane;
+        if(plane.size() == tiles)
+            throw new IllegalArgumentException("this many tiles will fill the entire plane, so it will never have a hole");
+        CanonicalForm forms = new CanonicalForm(complex);
+        int[] animal = new int[]{1};
+        TranspositionTable reached = new TranspositionTable(extensionTableCapacity(plane.p, 1, tiles));
+        return extendAnimal(plane, tiles, animal, forms.key(animal), 1, forms, reached);
     }
     
     /**
-    Helper for GetHoleyest. Returns the polyform from the input that has the most holes, and if there is a tie, fewest tiles.
-    @param best the baseline best polyform. If there is a tie in holes and polyforms, the oldest best is kept
-    @param others the other polyforms that will be searched
-    @param plane the tessellation that the polyforms reside in
-    @return the polyform with most holes and fewest tiles
+    Same as findHoleyestAnimal(CompactTessellation, int), but only searches polyforms that contain the given tiles,
+    extending from each of them in turn.
+    @param plane the CompactTessellation that is being searched
+    @param seed the indices of the tiles that every polyform searched must contain. Must not be empty
+    @param tiles the number of tiles that you want in your polyforms
+    @return the indices of the tiles of the polyform with the most holes, and if tied, fewest tiles
     */
-    private static HashSet<Tile> findBest(HashSet<Tile> best, HashSet<HashSet<Tile>> others, Tessellation plane){
+    public static int[] findHoleyestAnimal(CompactTessellation plane, int[] seed, int tiles){
+        if(seed.length == 0)
+            throw new IllegalArgumentException("the seed needs at least one tile to extend from");
+        if(plane.size() == tiles)
+            throw new IllegalArgumentException("this many tiles will fill the entire plane, so it will never have a hole");
+        int[] animal = Arrays.stream(seed).sorted().distinct().toArray();
+        int[] best = animal;
         int bestHoles = Polyform.numHoles(plane, best);
-        int contenderHoles;
-        for(HashSet<Tile> contender : others){
-            contenderHoles = Polyform.numHoles(plane, contender);
-            if(contenderHoles > bestHoles || (contenderHoles == bestHoles && contender.size() < best.size())){
-                bestHoles = contenderHoles;
-                best = contender;
+        long key = ZobristKeys.of(plane, animal);
+        int[] option;
+        int optionHoles;
+        TranspositionTable reached = new TranspositionTable(extensionTableCapacity(plane.p, animal.length, tiles));
+        for(int expansionPoint : animal){
+            option = extendAnimal(plane, tiles, animal, key, expansionPoint, null, reached);
+            optionHoles = Polyform.numHoles(plane, option);
+            if(optionHoles > bestHoles || (optionHoles == bestHoles && option.length < best.length)){
+                best = option;
+                bestHoles = optionHoles;
             }
         }
         return best;
     }
     
     /**
-    Uses the Floyd-Warshall algorithm to find 
-    the tile best suited for being translted to (0,0) in the tessellation
-    //TODO: maybe force tiles to be properly flagged as holes before this is called to allow passage across holes
+    The recursive helper for findHoleyestAnimal(CompactTessellation, int). Works the same as the Tile based version.
+    @param plane the CompactTessellation that is being worked in
+    @param tiles the target number of tiles
+    @param animal the sorted indices of the tiles that are already part of the animal
+    @param key the key of the animal, which is its canonical key if forms is not null
+    @param expansionPoint the index of the tile that was last added to the animal
+    @param forms if not null, polyforms are told apart by the keys of their canonical codes instead of their ZobristKeys keys
+    @param reached remembers the keys of the polyforms reached so far
+    @return an animal with the most holes and fewest tiles
     */
-    public static Tile findCenter(Tessellation plane){
-        Integer[][] distance = new Integer[plane.tessellation.size()][plane.tessellation.size()];
-        for(int i = 0; i < distance.length; i++){ //initializes distances
-            for(int j = 0; j < distance.length; j++){ //non-adjacent tiles
-                distance[i][j] = Integer.MAX_VALUE;
+    private static int[] extendAnimal(CompactTessellation plane, int tiles, int[] animal, long key, int expansionPoint, CanonicalForm forms,
+            TranspositionTable reached){
+        if(animal.length == tiles){
+            return animal;
+        }
+        
+        int[][] options = new int[plane.degree(expansionPoint)][];
+        
+        int[] tempAnimal;
+        long tempKey;
+        int next;
+        
+        for(int i = 0; i < options.length; i++){
+            next = plane.neighbor(expansionPoint, i);
+            if(Arrays.binarySearch(animal, next) >= 0)
+                continue;
+            if(forms == null){
+                tempKey = key ^ plane.keys[next];
+                if(reached.add(tempKey)) // the array is only made for combinations that are new
+                    options[i] = extendAnimal(plane, tiles, withTile(animal, next), tempKey, next, null, reached);
             }
-            for(Tile t : plane.tessellation.get(i).adjacent){ //adjacent tiles
-                if(t == null || t.type == Type.EMPTY) 
-                    continue;
-                distance[i][t.getAbsoluteIndex(plane.ringSizes)] = 1;
+            else {
+                tempAnimal = withTile(animal, next);
+                tempKey = forms.key(tempAnimal);
+                if(reached.add(tempKey))
+                    options[i] = extendAnimal(plane, tiles, tempAnimal, tempKey, next, forms, reached);
             }
-            distance[i][i] = 0; //itself
         }
         
-        for(int i = 0; i < distance.length; i++){ //computes true values for minimum distances
-            for(int j = 0; j < distance.length; j++){
-                for(int k = 0; k < distance.length; k++){
-                    if(distance[j][k] > distance[j][i] + distance[i][k]){
-                        distance[j][k] = distance[j][i] + distance[i][k];
+        int bestIndex = -1;
+        int bestHoles = Polyform.numHoles(plane, animal);
+        int tempHoles;
+        for(int i = 0; i < options.length; i++){
+            if(options[i] == null)
+                continue;
+            tempHoles = Polyform.numHoles(plane, options[i]);
+            
+            if(bestHoles < tempHoles){
+                bestIndex = i;
+                bestHoles = tempHoles;
+            }
+            else if(bestHoles == tempHoles){
+                if(bestIndex == -1){
+                    if(animal.length > options[i].length){
+                        bestIndex = i;
+                        bestHoles = tempHoles;
+                    }
+                }
+                else {
+                    if(options[bestIndex].length > options[i].length){
+                        bestIndex = i;
+                        bestHoles = tempHoles;
                     }
                 }
             }
         }
         
-        int minEccentricity = Integer.MAX_VALUE;
-        int temp;
-        Tile center = null;
-        for(int i = 0; i < distance.length; i++){ //stores the first tile with minimal eccentricity
-            temp = Integer.MAX_VALUE;
-            for(int j = 0; j < distance[i].length; j++){
-                if(temp > distance[i][j]){
-                    temp = distance[i][j];
+        return (bestIndex == -1 ? animal : options[bestIndex]);
+    }
+    
+    /**
+    Returns a copy of the sorted array with the given tile index inserted, or null if it is already present.
+    @param animal the sorted indices of an animal
+    @param tile the index that will be added
+    @return a sorted array containing every index of the animal and the tile, or null if the animal already has it
+    */
+    static int[] withTile(int[] animal, int tile){
+        int position = Arrays.binarySearch(animal, tile);
+        if(position >= 0)
+            return null;
+        position = -(position + 1);
+        int[] expanded = new int[animal.length + 1];
+        System.arraycopy(animal, 0, expanded, 0, position);
+        expanded[position] = tile;
+        System.arraycopy(animal, position, expanded, position + 1, animal.length - position);
+        return expanded;
+    }
+    
+    /**
+    Searches for the optimal polyform breadth first: each level holds every polyform containing the tile (1,0) with one more tile
+    than the level before, kept in a CompressedFrontier so a level takes a few bytes per polyform. Same as
+    getHoleyest(Tessellation, int, int) with one thread. Lazy tessellations first get every ring the polyforms can reach.
+    @param plane the Tessellation that is being searched
+    @param maxTiles the largest number of tiles in a polyform
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles and then smallest sorted indices
+    */
+    public static TileSet getHoleyest(Tessellation plane, int maxTiles){
+        return getHoleyest(plane, maxTiles, 1);
+    }
+    
+    /**
+    Searches breadth first like getHoleyest(Tessellation, int), but expands each level with several threads at once (see ParallelFrontier).
+    The polyforms of a level are split between tasks that make their expansions, keep the ones whose keys no other task
+    has added to a shared ConcurrentKeySet, and count the holes of those right away, so each polyform is scored once.
+    The result does not depend on the number of threads.
+    Lazy tessellations first get every ring the polyforms can reach.
+    @param plane the Tessellation that is being searched
+    @param maxTiles the largest number of tiles in a polyform
+    @param threads the number of threads that expand each level
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles and then smallest sorted indices
+    @throws IllegalArgumentException if threads is less than 1
+    */
+    public static TileSet getHoleyest(Tessellation plane, int maxTiles, int threads){
+        if(threads < 1)
+            throw new IllegalArgumentException("at least one thread is needed to search");
+        if(plane.isLazy())
+            plane.ensureRing(maxTiles);
+        CompactTessellation compact = plane.getCompact();
+        ForkJoinPool pool = new ForkJoinPool(threads);
+        ParallelFrontier frontier = new ParallelFrontier(compact, 1, pool);
+        try{
+            for(int i = 1; i < maxTiles && frontier.size > 0; i++)
+                frontier.expand();
+        }
+        finally{
+            pool.shutdown();
+        }
+        return new TileSet(frontier.best.tiles);
+    }
+    
+    /**
+    Same as getHoleyest(Tessellation, int), but keeps each level of the search in files instead of the heap (see DiskFrontier),
+    so the number of polyforms in a level is not limited by the heap. Each level is made by streaming the polyforms of the
+    level before it from disk, and is sorted and rid of duplicates by an external merge sort, which compares tile indices
+    instead of keys, so no polyform is lost to a key collision. The heap used does not depend on the size of a level.
+    Lazy tessellations first get every ring the polyforms can reach.
+    @param plane the Tessellation that is being searched
+    @param maxTiles the largest number of tiles in a polyform
+    @param bufferBytes the number of bytes of heap for polyforms that are waiting to be sorted, at least 1024.
+    Merging also uses a 64 KB stream buffer for each of up to DiskFrontier.MERGE_FAN_IN files
+    @param directory the directory to make the temporary files in, which are deleted before this returns
+    @return the absolute indices of the tiles of the polyform with the most holes, and if tied, fewest tiles and then smallest sorted indices
+    @throws java.io.UncheckedIOException if the files can't be made, written or read
+    */
+    public static TileSet getHoleyest(Tessellation plane, int maxTiles, long bufferBytes, File directory){
+        if(plane.isLazy())
+            plane.ensureRing(maxTiles);
+        CompactTessellation compact = plane.getCompact();
+        Candidate best = null, candidate;
+        int[] animal;
+        int tile, next, holes;
+        try(DiskFrontier frontier = new DiskFrontier(directory, bufferBytes)){
+            frontier.startLevel(1);
+            frontier.add(new int[0], 1);
+            frontier.finishLevel();
+            for(int size = 1; size <= maxTiles && frontier.levelSize > 0; size++){
+                if(size < maxTiles)
+                    frontier.startLevel(size + 1);
+                try(DiskFrontier.Reader level = frontier.read()){
+                    animal = level.record;
+                    while(level.next()){
+                        holes = Polyform.numHoles(compact, animal);
+                        if(best == null || holes > best.holes || (holes == best.holes && size < best.tiles.length)){
+                            candidate = new Candidate(animal.clone(), holes); // the level is sorted, so this is the smallest of its ties
+                            best = candidate;
+                        }
+                        if(size == maxTiles)
+                            continue;
+                        for(int i = 0; i < size; i++){
+                            tile = animal[i];
+                            for(int k = 0; k < compact.degree(tile); k++){
+                                next = compact.neighbor(tile, k);
+                                if(Arrays.binarySearch(animal, next) < 0)
+                                    frontier.add(animal, next);
+                            }
+                        }
+                    }
                 }
+                if(size < maxTiles)
+                    frontier.finishLevel();
             }
-            if(minEccentricity > temp){
-                minEccentricity = temp;
-                center = plane.tessellation.get(i);
-            } 
         }
+        catch(IOException e){
+            throw new UncheckedIOException("could not keep the frontier in " + directory, e);
+        }
+        return new TileSet(best.tiles);
+    }
+    
+    /**
+    Returns a lazy stream of every polyform that contains the root and has from minTiles to maxTiles tiles, each made once
+    (see PolyformSpliterator). Call parallel() on it to search with several threads.
+    Lazy tessellations first get every ring such a polyform can reach, plus one more. When the tessellation has that many rings,
+    holes are counted from the Euler characteristic of each polyform (see EulerHoleCounter), and otherwise by flooding.
+    The views may be reused for the next polyform, so copy anything that is kept, for example with PolyformView.toArray().
+    @param plane the Tessellation that is being searched
+    @param root the tile every polyform contains
+    @param minTiles the fewest tiles of a polyform in the stream
+    @param maxTiles the most tiles of a polyform in the stream
+    @return a stream of views of the polyforms, whose tile indices are for plane.getCompact()
+    @throws IllegalArgumentException if the root is not in the tessellation or the range of tiles is empty
+    */
+    public static Stream<PolyformView> polyforms(Tessellation plane, Tile root, int minTiles, int maxTiles){
+        if(plane.isLazy())
+            plane.ensureRing(root.ringNum + maxTiles);
+        CompactTessellation compact = plane.getCompact();
+        int id = compact.index(root);
+        if(id < 0)
+            throw new IllegalArgumentException(root + " is not in the tessellation");
+        Supplier<HoleEvaluator> evaluators;
+        if(compact.rings >= root.ringNum + maxTiles){ // no polyform reaches the outermost ring
+            TessellationComplex complex = new TessellationComplex(plane);
+            evaluators = () -> new EulerHoleCounter(complex);
+        }
+        else
+            evaluators = () -> new FloodHoleEvaluator(compact);
+        return StreamSupport.stream(new PolyformSpliterator(compact, id, minTiles, maxTiles, evaluators), false);
+    }
+    
+    /**
+    Same as polyforms(Tessellation, Tile, int, int), but searches a compact tessellation. Holes are counted by flooding.
+    @param plane the CompactTessellation that is being searched
+    @param root the index of the tile every polyform contains
+    @param minTiles the fewest tiles of a polyform in the stream
+    @param maxTiles the most tiles of a polyform in the stream
+    @return a stream of views of the polyforms
+    @throws IllegalArgumentException if the root is not in the tessellation or the range of tiles is empty
+    */
+    public static Stream<PolyformView> polyforms(CompactTessellation plane, int root, int minTiles, int maxTiles){
+        return StreamSupport.stream(spliterator(plane, root, minTiles, maxTiles), false);
+    }
+    
+    /**
+    Returns the spliterator behind polyforms(CompactTessellation, int, int, int), for use without streams.
+    @param plane the CompactTessellation that is being searched
+    @param root the index of the tile every polyform contains
+    @param minTiles the fewest tiles of a polyform that is handed out
+    @param maxTiles the most tiles of a polyform that is handed out
+    @return a spliterator of views of the polyforms
+    @throws IllegalArgumentException if the root is not in the tessellation or the range of tiles is empty
+    */
+    public static Spliterator<PolyformView> spliterator(CompactTessellation plane, int root, int minTiles, int maxTiles){
+        return new PolyformSpliterator(plane, root, minTiles, maxTiles, () -> new FloodHoleEvaluator(plane));
+    }
+    
+    /**
+    Finds the tile best suited for being translated to (0,0) in the tessellation, which is the tile of the polyform
+    with the least eccentricity. The polyform is made of the tiles flagged as ANIMAL, and paths may pass across its holes.
+    @param plane the tessellation containing the polyform
+    @return the center of the polyform, or null if no tile is flagged as ANIMAL
+    @throws IllegalArgumentException if the polyform is not connected
+    */
+    public static Tile findCenter(Tessellation plane){
+        TileSet animal = new TileSet();
+        for(int id = 0; id < plane.tessellation.size(); id++)
+            if(plane.tessellation.get(id).type == Type.ANIMAL)
+                animal.add(id);
+        if(animal.isEmpty())
+            return null;
+        return findCenter(plane, animal, true);
+    }
+    
+    /**
+    Finds the tile best suited for being translated to (0,0) in the tessellation, which is the tile of the polyform
+    with the least eccentricity. See PolyformCenter.
+    @param plane the tessellation containing the polyform
+    @param animal the absolute indices of the tiles of the polyform
+    @param acrossHoles whether paths can pass through the polyform's holes
+    @return the center of the polyform
+    @throws IllegalArgumentException if the polyform is empty or not connected
+    */
+    public static Tile findCenter(Tessellation plane, TileSet animal, boolean acrossHoles){
+        if(acrossHoles)
+            Polyform.surround(plane, animal);
+        CompactTessellation compact = plane.getCompact();
+        int center = new PolyformCenter(compact, new Polyform(plane, animal).getIndices(compact), acrossHoles).getCenter();
+        return plane.tessellation.get(center);
+    }
+    
+    /**
+    Keeps a copy of the best polyform it is given: the one with the most holes, and if tied, fewest tiles and then
+    smallest sorted indices. Since that order does not depend on the order polyforms are visited in, several threads
+    can share one visitor and always get the same result. The best polyform is replaced by compare and set, without locking.
+    When made with a tile limit, it also turns down extending any polyform whose extensions can't have more holes than
+    the best polyform so far, or as many holes and no more tiles, so the result is the same as without the limit.
+    */
+    static final class HoleyestVisitor implements PolyformVisitor {
+        /**
+        The best polyform so far, or null before the first polyform.
+        */
+        final AtomicReference<Candidate> best = new AtomicReference<Candidate>();
+        
+        /**
+        The number of polyforms that were not extended because of the hole bound.
+        */
+        final LongAdder pruned = new LongAdder();
+        
+        /**
+        The number of sides of each tile.
+        */
+        final int p;
+        
+        /**
+        The number of tiles around each vertex.
+        */
+        final int q;
         
-        return center;
+        /**
+        The largest number of tiles in a polyform, or 0 to extend every polyform.
+        */
+        final int maxTiles;
+        
+        /**
+        The most holes a polyform with each number of tiles up to maxTiles can have, by the most edges that can be
+        around it and its holes (see Polyform.maxHoles), so the bound costs one lookup for each polyform.
+        */
+        final int[][] holeBounds;
+        
+        /**
+        Makes a visitor that extends every polyform.
+        */
+        HoleyestVisitor(){
+            this(0, 0, 0);
+        }
+        
+        /**
+        Makes a visitor that only extends polyforms that might lead to a better polyform.
+        @param p the number of sides of each tile
+        @param q the number of tiles around each vertex
+        @param maxTiles the largest number of tiles in a polyform
+        */
+        HoleyestVisitor(int p, int q, int maxTiles){
+            this.p = p;
+            this.q = q;
+            this.maxTiles = maxTiles;
+            this.holeBounds = new int[maxTiles + 1][];
+            for(int tiles = 1; tiles <= maxTiles; tiles++){
+                holeBounds[tiles] = new int[(p - 2)*tiles + 3]; // a polyform has at least size - 1 shared edges
+                for(int edges = 0; edges < holeBounds[tiles].length; edges++)
+                    holeBounds[tiles][edges] = Polyform.maxHolesWithin(p, q, tiles, edges);
+            }
+        }
+        
+        @Override
+        public boolean visit(int[] tiles, int size, HoleEvaluator evaluator){
+            int holes = evaluator.holes();
+            Candidate current = best.get();
+            if(current != null && (holes < current.holes || (holes == current.holes && size > current.tiles.length)))
+                return canImprove(size, evaluator.sharedEdges(), current); // most polyforms are turned away here, without copying them
+            int[] sorted = Arrays.copyOf(tiles, size);
+            Arrays.sort(sorted);
+            Candidate candidate = new Candidate(sorted, holes);
+            while(current == null || candidate.isBetterThan(current)){
+                if(best.compareAndSet(current, candidate)){
+                    current = candidate;
+                    break;
+                }
+                current = best.get();
+            }
+            return canImprove(size, evaluator.sharedEdges(), current);
+        }
+        
+        /**
+        Returns true if adding tiles to a polyform might make one that is not worse than the best polyform.
+        The hole bound only grows with the number of tiles, so it is enough to check it at the most tiles allowed
+        and at the most tiles a polyform with as many holes as the best one may have.
+        @param size the number of tiles in the polyform
+        @param sharedEdges the number of edges that are sides of two of its tiles
+        @param best the best polyform so far
+        @return true if the polyform should be extended
+        */
+        private boolean canImprove(int size, int sharedEdges, Candidate best){
+            if(maxTiles == 0 || size == maxTiles) // polyforms with maxTiles tiles are never extended anyway
+                return true;
+            if(maxHoles(size, sharedEdges, maxTiles) > best.holes)
+                return true;
+            int tieTiles = Math.min(maxTiles, best.tiles.length);
+            if(size < tieTiles && maxHoles(size, sharedEdges, tieTiles) >= best.holes)
+                return true;
+            pruned.increment();
+            return false;
+        }
+        
+        /**
+        Returns Polyform.maxHoles(p, q, size, sharedEdges, tiles) from holeBounds.
+        */
+        private int maxHoles(int size, int sharedEdges, int tiles){
+            return holeBounds[tiles][(p - 2)*tiles + 2*size - 2*sharedEdges];
+        }
+    }
+    
+    /**
+    A polyform and its number of holes, which do not change.
+    */
+    static final class Candidate {
+        /**
+        The sorted indices of the tiles of the polyform.
+        */
+        final int[] tiles;
+        
+        /**
+        The number of holes in the polyform.
+        */
+        final int holes;
+        
+        Candidate(int[] tiles, int holes){
+            this.tiles = tiles;
+            this.holes = holes;
+        }
+        
+        /**
+        Returns true if and only if this polyform has more holes, or as many holes and fewer tiles,
+        or as many of both and smaller indices than the other, compared in order.
+        @param other another polyform
+        @return true iff this polyform comes first
+        */
+        boolean isBetterThan(Candidate other){
+            if(holes != other.holes)
+                return holes > other.holes;
+            if(tiles.length != other.tiles.length)
+                return tiles.length < other.tiles.length;
+            return Arrays.compare(tiles, other.tiles) < 0;
+        }
     }
-} 
\ No newline at end of file
+}
\ No newline at end of file
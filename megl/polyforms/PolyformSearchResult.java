@@ -0,0 +1,93 @@
+package megl.polyforms;
+
+/**
+The outcome of a search for the polyform with the most holes and fewest tiles (see PolyformFinder.searchHoleyestAnimal),
+together with how much of the search was needed to find it.
+A result is proven optimal when no polyform with up to the given number of tiles can do better anywhere in the infinite
+tessellation. Every tile of a regular tessellation looks the same, so any polyform can be moved to contain the tile (1,0),
+and the search covers every such polyform apart from parts whose hole bound (see Polyform.maxHoles) shows they can't do better.
+That only covers every polyform when none of them reaches the outermost ring, since holes there can be cut off by the edge.
+*/
+public class PolyformSearchResult {
+    /**
+    The sorted indices of the tiles of the best polyform.
+    */
+    final int[] tiles;
+
+    /**
+    The number of holes in the best polyform.
+    */
+    final int holes;
+
+    /**
+    Whether no polyform with up to the searched number of tiles can have more holes, or as many with fewer tiles.
+    */
+    final boolean provenOptimal;
+
+    /**
+    The number of polyforms that were made.
+    */
+    final long visited;
+
+    /**
+    The number of polyforms that were not extended because of the hole bound.
+    */
+    final long pruned;
+
+    PolyformSearchResult(int[] tiles, int holes, boolean provenOptimal, long visited, long pruned){
+        this.tiles = tiles;
+        this.holes = holes;
+        this.provenOptimal = provenOptimal;
+        this.visited = visited;
+        this.pruned = pruned;
+    }
+
+    /**
+    Returns the tiles of the best polyform.
+    @return the sorted indices of its tiles in the compact tessellation that was searched
+    */
+    public int[] getTiles(){
+        return tiles.clone();
+    }
+
+    /**
+    Returns the tiles of the best polyform as a set, for example to make a Polyform in the Tessellation that was searched.
+    @return the absolute indices of its tiles, which are their indices in the compact tessellation that was searched
+    */
+    public TileSet getAnimal(){
+        return new TileSet(tiles);
+    }
+
+    /**
+    Returns the number of holes in the best polyform.
+    @return the number of holes
+    */
+    public int getHoles(){
+        return holes;
+    }
+
+    /**
+    Returns true if and only if no polyform with up to the searched number of tiles, anywhere in the tessellation,
+    has more holes than the best polyform, or as many holes and fewer tiles.
+    @return true iff the result is proven optimal
+    */
+    public boolean isProvenOptimal(){
+        return provenOptimal;
+    }
+
+    /**
+    Returns the number of polyforms that were made during the search.
+    @return the number of polyforms visited
+    */
+    public long getVisited(){
+        return visited;
+    }
+
+    /**
+    Returns the number of polyforms whose extensions were skipped because they could not beat the best polyform found.
+    @return the number of pruned polyforms
+    */
+    public long getPruned(){
+        return pruned;
+    }
+}
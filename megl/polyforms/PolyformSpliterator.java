@@ -0,0 +1,197 @@
+package megl.polyforms;
+
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Spliterator;
+import java.util.function.Consumer;
+import java.util.function.Supplier;
+
+/**
+Hands out every polyform that contains a given root tile and has a number of tiles in a given range, one PolyformView at a time,
+so that streams can count, sort into histograms or pick out polyforms without keeping them all (see PolyformFinder.polyforms).
+The polyforms are made by PolyformEnumerator, and the part of the search a spliterator still has to cover is a queue of
+Subtrees. forEachRemaining searches them one after another at the speed of the enumerator, reusing one view.
+tryAdvance and trySplit instead search one level below a subtree at a time, which copies each polyform of that level
+and queues the subtrees below them, so the search only goes as far as the polyforms that are asked for.
+trySplit hands about half of the queued subtrees, by estimated size, to a new spliterator, so parallel streams can give
+large subtrees to different threads. A subtree below a polyform of s tiles with u untried tiles is estimated to hold
+u * p^(maxTiles - s - 1) polyforms, which is not accurate, but is larger for the subtrees that are larger.
+Each thread has its own enumerator, made the first time it searches, so an action must not search polyforms of the same
+spliterator on the thread that called it.
+*/
+public class PolyformSpliterator implements Spliterator<PolyformView> {
+    /**
+    The compact tessellation that is searched.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The fewest tiles of a polyform that is handed out.
+    */
+    final int minTiles;
+
+    /**
+    The most tiles of a polyform that is handed out.
+    */
+    final int maxTiles;
+
+    /**
+    The enumerator of each thread, shared by every spliterator split from the same one.
+    */
+    final ThreadLocal<PolyformEnumerator> enumerators;
+
+    /**
+    The parts of the search that are left, with the ones to search first at the front.
+    */
+    final ArrayDeque<PolyformEnumerator.Subtree> pending;
+
+    /**
+    Copies of polyforms that were made while searching one level, waiting to be handed out.
+    */
+    final ArrayDeque<PolyformView> ready;
+
+    /**
+    Sets up a search of the polyforms containing the root.
+    @param plane the compact tessellation that is searched
+    @param root the index of the tile every polyform contains
+    @param minTiles the fewest tiles of a polyform that is handed out
+    @param maxTiles the most tiles of a polyform that is handed out
+    @param evaluators makes a new, empty HoleEvaluator for each thread
+    @throws IllegalArgumentException if minTiles is more than maxTiles, maxTiles is less than 1, or the root is not in the tessellation
+    */
+    public PolyformSpliterator(CompactTessellation plane, int root, int minTiles, int maxTiles, Supplier<HoleEvaluator> evaluators){
+        if(maxTiles < 1)
+            throw new IllegalArgumentException("can't have polyform with no tiles");
+        if(minTiles > maxTiles)
+            throw new IllegalArgumentException("the fewest tiles can't be more than the most tiles");
+        if(root < 0 || root >= plane.size())
+            throw new IllegalArgumentException("the root " + root + " is not in the tessellation");
+        this.plane = plane;
+        this.minTiles = minTiles;
+        this.maxTiles = maxTiles;
+        this.enumerators = ThreadLocal.withInitial(() -> new PolyformEnumerator(plane, root, maxTiles, evaluators.get()));
+        this.pending = new ArrayDeque<PolyformEnumerator.Subtree>();
+        this.ready = new ArrayDeque<PolyformView>();
+        pending.add(PolyformEnumerator.rootSubtree(root));
+    }
+
+    /**
+    Makes a spliterator for some of the subtrees of another one.
+    @param other the spliterator that is split
+    */
+    private PolyformSpliterator(PolyformSpliterator other){
+        this.plane = other.plane;
+        this.minTiles = other.minTiles;
+        this.maxTiles = other.maxTiles;
+        this.enumerators = other.enumerators;
+        this.pending = new ArrayDeque<PolyformEnumerator.Subtree>();
+        this.ready = new ArrayDeque<PolyformView>();
+    }
+
+    @Override
+    public boolean tryAdvance(Consumer<? super PolyformView> action){
+        while(ready.isEmpty()){
+            if(pending.isEmpty())
+                return false;
+            expand(pending.pollFirst());
+        }
+        action.accept(ready.pollFirst());
+        return true;
+    }
+
+    @Override
+    public void forEachRemaining(Consumer<? super PolyformView> action){
+        while(!ready.isEmpty())
+            action.accept(ready.pollFirst());
+        if(pending.isEmpty())
+            return;
+        PolyformEnumerator enumerator = enumerators.get();
+        PolyformView view = new PolyformView(plane);
+        PolyformVisitor visitor = (tiles, size, holes) -> {
+            if(size >= minTiles){
+                view.set(tiles, size, holes);
+                action.accept(view);
+            }
+            return true;
+        };
+        while(!pending.isEmpty())
+            enumerator.enumerate(pending.pollFirst(), visitor);
+    }
+
+    @Override
+    public Spliterator<PolyformView> trySplit(){
+        while(pending.size() == 1) // a single subtree can only be split by searching its top level
+            expand(pending.pollFirst());
+        if(pending.size() < 2)
+            return null;
+        double half = estimate()/2;
+        PolyformSpliterator split = new PolyformSpliterator(this);
+        double moved = 0;
+        while(moved < half && pending.size() > 1){ // the last subtrees are the largest
+            PolyformEnumerator.Subtree subtree = pending.pollLast();
+            moved += weight(subtree);
+            split.pending.addFirst(subtree);
+        }
+        return split;
+    }
+
+    @Override
+    public long estimateSize(){
+        return (long) Math.min(estimate(), Long.MAX_VALUE);
+    }
+
+    @Override
+    public int characteristics(){
+        return NONNULL;
+    }
+
+    /**
+    Searches the top level of a subtree, keeping a copy of each polyform it makes that has enough tiles, and queues
+    the subtree below each of them at the front, in the order they were made.
+    @param subtree the part of the search to split up
+    */
+    private void expand(PolyformEnumerator.Subtree subtree){
+        PolyformEnumerator enumerator = enumerators.get();
+        ArrayList<PolyformEnumerator.Subtree> parts = new ArrayList<PolyformEnumerator.Subtree>();
+        enumerator.splitter = new PolyformEnumerator.Splitter(){
+            @Override
+            public boolean wantsSplit(int size){
+                return true;
+            }
+
+            @Override
+            public void split(PolyformEnumerator.Subtree part){
+                parts.add(part);
+            }
+        };
+        try{
+            enumerator.enumerate(subtree, (tiles, size, holes) -> {
+                if(size >= minTiles)
+                    ready.add(PolyformView.copyOf(plane, tiles, size, holes));
+                return true;
+            });
+        }
+        finally{
+            enumerator.splitter = null;
+        }
+        for(int i = parts.size() - 1; i >= 0; i--)
+            pending.addFirst(parts.get(i));
+    }
+
+    /**
+    Returns the estimated number of polyforms left to hand out.
+    */
+    private double estimate(){
+        double total = ready.size();
+        for(PolyformEnumerator.Subtree subtree : pending)
+            total += weight(subtree);
+        return total;
+    }
+
+    /**
+    Returns the estimated number of polyforms in a subtree.
+    */
+    private double weight(PolyformEnumerator.Subtree subtree){
+        return subtree.untried.length*Math.pow(plane.p, maxTiles - subtree.prefix.length - 1);
+    }
+}
@@ -0,0 +1,143 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+A polyform handed out by a PolyformSpliterator, seen through the tile indices of a compact tessellation.
+To keep streams of polyforms from making an object per polyform, the spliterator may reuse one view for every polyform
+it hands to an action, so a view is only valid until the action returns. Copy what is needed out of it, for example
+with toArray(), instead of keeping the view.
+*/
+public final class PolyformView {
+    /**
+    The compact tessellation containing the polyform.
+    */
+    final CompactTessellation plane;
+
+    /**
+    An array starting with the indices of the tiles of the polyform, in the order they were added.
+    */
+    int[] tiles;
+
+    /**
+    The number of tiles in the polyform.
+    */
+    int size;
+
+    /**
+    Counts the holes of the polyform, or null if they were counted when the view was made.
+    */
+    HoleEvaluator evaluator;
+
+    /**
+    The number of holes, if evaluator is null.
+    */
+    int holes;
+
+    /**
+    The number of shared edges, if evaluator is null.
+    */
+    int sharedEdges;
+
+    /**
+    Makes a view that will be pointed at polyforms as they are made.
+    @param plane the compact tessellation containing the polyforms
+    */
+    PolyformView(CompactTessellation plane){
+        this.plane = plane;
+    }
+
+    /**
+    Points the view at the current polyform of an enumerator.
+    @param tiles an array starting with the indices of the tiles of the polyform
+    @param size the number of tiles in the polyform
+    @param evaluator counts the holes of the polyform
+    */
+    void set(int[] tiles, int size, HoleEvaluator evaluator){
+        this.tiles = tiles;
+        this.size = size;
+        this.evaluator = evaluator;
+    }
+
+    /**
+    Makes a view of a copy of the current polyform of an enumerator, which stays valid after the enumerator moves on.
+    @param plane the compact tessellation containing the polyform
+    @param tiles an array starting with the indices of the tiles of the polyform
+    @param size the number of tiles in the polyform
+    @param evaluator counts the holes of the polyform
+    @return a view that does not change
+    */
+    static PolyformView copyOf(CompactTessellation plane, int[] tiles, int size, HoleEvaluator evaluator){
+        PolyformView view = new PolyformView(plane);
+        view.tiles = Arrays.copyOf(tiles, size);
+        view.size = size;
+        view.holes = evaluator.holes();
+        view.sharedEdges = evaluator.sharedEdges();
+        return view;
+    }
+
+    /**
+    Returns the compact tessellation that the tile indices are for.
+    @return the compact tessellation containing the polyform
+    */
+    public CompactTessellation getPlane(){
+        return plane;
+    }
+
+    /**
+    Returns the number of tiles in the polyform.
+    @return the number of tiles
+    */
+    public int size(){
+        return size;
+    }
+
+    /**
+    Returns one tile of the polyform. The first tile is the root that every polyform of the spliterator contains.
+    @param i the position of the tile in the order the tiles were added, from 0 to size() - 1
+    @return the index of the tile
+    @throws IndexOutOfBoundsException if i is not the position of a tile
+    */
+    public int tile(int i){
+        if(i < 0 || i >= size)
+            throw new IndexOutOfBoundsException("the polyform has no tile " + i);
+        return tiles[i];
+    }
+
+    /**
+    Returns the number of holes in the polyform.
+    @return the number of holes
+    */
+    public int holes(){
+        return (evaluator == null ? holes : evaluator.holes());
+    }
+
+    /**
+    Returns the number of edges that are sides of two tiles of the polyform.
+    @return the number of shared edges
+    */
+    public int sharedEdges(){
+        return (evaluator == null ? sharedEdges : evaluator.sharedEdges());
+    }
+
+    /**
+    Returns the key of the polyform (see ZobristKeys).
+    @return the XOR of the keys of the tiles
+    */
+    public long key(){
+        long key = 0;
+        for(int i = 0; i < size; i++)
+            key ^= plane.keys[tiles[i]];
+        return key;
+    }
+
+    /**
+    Returns a copy of the tiles of the polyform, which can be kept after the view changes.
+    @return the sorted indices of the tiles
+    */
+    public int[] toArray(){
+        int[] sorted = Arrays.copyOf(tiles, size);
+        Arrays.sort(sorted);
+        return sorted;
+    }
+}
@@ -0,0 +1,15 @@
+package megl.polyforms;
+
+/**
+Receives each polyform made by a PolyformEnumerator.
+*/
+public interface PolyformVisitor {
+    /**
+    Examines a polyform. The array and the evaluator are reused for the next polyform, so anything kept must be copied.
+    @param tiles an array starting with the indices of the tiles of the polyform, in the order they were added
+    @param size the number of tiles in the polyform
+    @param holes counts the holes of the polyform
+    @return true if the polyform should be extended, or false to skip every polyform made by adding tiles to it
+    */
+    boolean visit(int[] tiles, int size, HoleEvaluator holes);
+}
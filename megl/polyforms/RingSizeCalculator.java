@@ -0,0 +1,224 @@
+package megl.polyforms;
+
+import java.math.BigInteger;
+
+/**
+Computes how many tiles are in each ring of the {p,q} tessellation without making any tiles.
+Each ring is described by how many of its tiles are primary and how many are secondary, and the next ring's counts
+are a linear function of those, mirroring the three ring generators in Tessellation:
+    In general, a primary tile makes p-3 primary tiles and (p-3)(q-3)-1 secondary tiles in the next ring,
+        and a secondary tile makes p-2 primary tiles and (p-2)(q-3)-1 secondary tiles.
+    When p = 3, each secondary tile makes one primary tile and q-4 secondary tiles, except that one secondary tile
+        is skipped for every primary tile in the ring.
+    When q = 3, a primary tile makes p-5 primary tiles, a secondary tile makes p-6, and each makes one secondary tile.
+Sizes are found by raising that linear map to a power, so any ring can be computed in O(log ring) multiplications.
+The counts match Tessellation exactly for hyperbolic tessellations, where (p-2)(q-2) > 4.
+*/
+public class RingSizeCalculator {
+    /**
+    Specifies how many tiles share an edge with any given tile.
+    */
+    final int p;
+
+    /**
+    Specifies how many tiles share any given vertex.
+    */
+    final int q;
+
+    /**
+    The linear map from a ring's primary and secondary counts to the next ring's, along with the running total.
+    Entries are ordered {primary, secondary, total} for both rows and columns.
+    */
+    final BigInteger[][] step;
+
+    /**
+    The primary count, secondary count, and total number of tiles through ring 1.
+    */
+    final BigInteger[] ringOne;
+
+    /**
+    Sets up the recurrence for the {p,q} tessellation.
+    @param p the number of Tiles that share an edge with any given Tile
+    @param q the number of Tiles that share any given vertex
+    */
+    public RingSizeCalculator(int p, int q){
+        if(p < 3 || q < 3 || (p-2)*(q-2) <= 4)
+            throw new IllegalArgumentException("Ring sizes are only computed for hyperbolic tessellations. Required: (p-2)(q-2) > 4.");
+        this.p = p;
+        this.q = q;
+
+        long[] coefficients; // primary from primary, primary from secondary, secondary from primary, secondary from secondary
+        long primaries = p;
+        long secondaries = (long) p*(q-3);
+        if(p == 3)
+            coefficients = new long[]{0, 1, -1, q-4};
+        else if(q == 3)
+            coefficients = new long[]{p-5, p-6, 1, 1};
+        else
+            coefficients = new long[]{p-3, p-2, (long) (p-3)*(q-3)-1, (long) (p-2)*(q-3)-1};
+
+        step = new BigInteger[3][3];
+        step[0][0] = BigInteger.valueOf(coefficients[0]);
+        step[0][1] = BigInteger.valueOf(coefficients[1]);
+        step[0][2] = BigInteger.ZERO;
+        step[1][0] = BigInteger.valueOf(coefficients[2]);
+        step[1][1] = BigInteger.valueOf(coefficients[3]);
+        step[1][2] = BigInteger.ZERO;
+        step[2][0] = BigInteger.valueOf(coefficients[0] + coefficients[2]); // the new ring is added to the total
+        step[2][1] = BigInteger.valueOf(coefficients[1] + coefficients[3]);
+        step[2][2] = BigInteger.ONE;
+
+        ringOne = new BigInteger[]{BigInteger.valueOf(primaries), BigInteger.valueOf(secondaries), BigInteger.valueOf(1 + primaries + secondaries)};
+    }
+
+    /**
+    Returns the primary count, secondary count and total number of tiles through the given ring.
+    @param ring a ring number of at least 1
+    @return {primaries, secondaries, total} for the ring
+    */
+    private BigInteger[] countsThrough(int ring){
+        BigInteger[][] power = identity();
+        BigInteger[][] base = step;
+        for(int e = ring - 1; e > 0; e >>= 1){
+            if((e & 1) == 1)
+                power = multiply(power, base);
+            base = multiply(base, base);
+        }
+        BigInteger[] counts = new BigInteger[3];
+        for(int i = 0; i < 3; i++){
+            counts[i] = BigInteger.ZERO;
+            for(int j = 0; j < 3; j++)
+                counts[i] = counts[i].add(power[i][j].multiply(ringOne[j]));
+        }
+        return counts;
+    }
+
+    /**
+    Returns the exact number of tiles in the given ring.
+    @param ring the ring whose size will be returned
+    @return the number of tiles in the ring
+    */
+    public BigInteger sizeOfRing(int ring){
+        if(ring < 0)
+            throw new IllegalArgumentException("ring must not be negative");
+        if(ring == 0)
+            return BigInteger.ONE;
+        BigInteger[] counts = countsThrough(ring);
+        return counts[0].add(counts[1]);
+    }
+
+    /**
+    Returns the exact number of tiles in a tessellation with the given number of rings, including ring 0.
+    @param rings the number of rings, not including ring 0
+    @return the number of tiles in rings 0 through rings
+    */
+    public BigInteger totalTiles(int rings){
+        if(rings < 0)
+            throw new IllegalArgumentException("rings must not be negative");
+        if(rings == 0)
+            return BigInteger.ONE;
+        return countsThrough(rings)[2];
+    }
+
+    /**
+    Returns the number of tiles in the given ring as a long.
+    @param ring the ring whose size will be returned
+    @return the number of tiles in the ring
+    @throws ArithmeticException if the size does not fit in a long
+    */
+    public long sizeOfRingExact(int ring){
+        return sizeOfRing(ring).longValueExact();
+    }
+
+    /**
+    Returns the number of tiles in a tessellation with the given number of rings as a long.
+    @param rings the number of rings, not including ring 0
+    @return the number of tiles in rings 0 through rings
+    @throws ArithmeticException if the total does not fit in a long
+    */
+    public long totalTilesExact(int rings){
+        return totalTiles(rings).longValueExact();
+    }
+
+    /**
+    Returns true if and only if every tile of a tessellation with the given number of rings can be given an int index.
+    @param rings the number of rings, not including ring 0
+    @return true iff the total number of tiles is at most Integer.MAX_VALUE
+    */
+    public boolean fitsInInt(int rings){
+        return totalTiles(rings).compareTo(BigInteger.valueOf(Integer.MAX_VALUE)) <= 0;
+    }
+
+    /**
+    Returns the largest number of rings for which every tile can be given an int index.
+    @return the most rings a Tessellation or CompactTessellation can have
+    */
+    public int maxRings(){
+        long primaries = p;
+        long secondaries = (long) p*(q-3);
+        long total = 1 + primaries + secondaries;
+        long next;
+        int rings = 0;
+        while(total <= Integer.MAX_VALUE){ // ring sizes grow exponentially, so this only takes a few steps
+            rings++;
+            next = step[0][0].longValue()*primaries + step[0][1].longValue()*secondaries;
+            secondaries = step[1][0].longValue()*primaries + step[1][1].longValue()*secondaries;
+            primaries = next;
+            total += primaries + secondaries; // still far from overflowing a long, since the last total fit in an int
+        }
+        return rings;
+    }
+
+    /**
+    Estimates how many bytes of heap a Tessellation with the given number of rings needs.
+    Assumes a 12 byte object header, compressed references, and an ArrayList entry per tile.
+    @param rings the number of rings, not including ring 0
+    @return the approximate memory needed for the tiles and their adjacent arrays
+    */
+    public BigInteger estimateTessellationBytes(int rings){
+        long tileBytes = align(12 + 4 + 4 + 4 + 4 + 1); // header, adjacent, type, ringNum, ringPos, wasPrimary
+        long arrayBytes = align(16 + 4L*p);
+        return totalTiles(rings).multiply(BigInteger.valueOf(tileBytes + arrayBytes + 4));
+    }
+
+    /**
+    Estimates how many bytes of heap a CompactTessellation with the given number of rings needs.
+    @param rings the number of rings, not including ring 0
+    @return the approximate memory needed for the offset and neighbor arrays
+    */
+    public BigInteger estimateCompactBytes(int rings){
+        return totalTiles(rings).multiply(BigInteger.valueOf(4 + 4L*p));
+    }
+
+    /**
+    Rounds a number of bytes up to the 8 byte alignment of objects.
+    */
+    private static long align(long bytes){
+        return (bytes + 7) & ~7L;
+    }
+
+    /**
+    Returns the 3 by 3 identity matrix.
+    */
+    private static BigInteger[][] identity(){
+        BigInteger[][] matrix = new BigInteger[3][3];
+        for(int i = 0; i < 3; i++)
+            for(int j = 0; j < 3; j++)
+                matrix[i][j] = (i == j ? BigInteger.ONE : BigInteger.ZERO);
+        return matrix;
+    }
+
+    /**
+    Multiplies two 3 by 3 matrices.
+    */
+    private static BigInteger[][] multiply(BigInteger[][] a, BigInteger[][] b){
+        BigInteger[][] product = new BigInteger[3][3];
+        for(int i = 0; i < 3; i++)
+            for(int j = 0; j < 3; j++){
+                product[i][j] = BigInteger.ZERO;
+                for(int k = 0; k < 3; k++)
+                    product[i][j] = product[i][j].add(a[i][k].multiply(b[k][j]));
+            }
+        return product;
+    }
+}
@@ -0,0 +1,263 @@
+package megl.polyforms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicReference;
+
+/**
+Saves the progress of a search for the polyform with the most holes (see PolyformFinder.searchHoleyestAnimal) to a file,
+so that a search that is stopped can be resumed from where it was instead of from the start.
+The search is split into units: the search below each polyform with fewer than CHECKPOINT_DEPTH tiles,
+which are always separate tasks of ParallelPolyformEnumerator and the same in every run. Each polyform is made once,
+so a unit is identified by the ZobristKeys key of its polyform. When a unit is finished, its key and the number of
+polyforms it visited are recorded, and a resumed search skips every recorded unit. Together with the best polyform so far,
+which is also saved, this gives the same result as a search that was never stopped.
+A background thread writes the file every so often, so the search itself only records finished units.
+The file is written in full to a temporary file next to it, which then replaces it in one atomic move,
+so a crash while writing leaves the previous checkpoint in place. The format, in DataOutputStream order, is
+    the int MAGIC, then p, q, rings and tiles of the search as ints and whether it was bounded as a boolean,
+    the index and number of shards of the search as ints, which are 0 and 1 if it was not split into shards,
+    the number of holes and tiles of the best polyform followed by its tile indices, or -1 and 0 before there is one,
+    the number of finished units as an int, and then the key and visited polyforms of each unit as longs.
+*/
+public class SearchCheckpoint {
+    /**
+    The first int of every checkpoint file.
+    */
+    static final int MAGIC = 0x50464332;
+
+    /**
+    Polyforms with fewer tiles than this have the search below them saved as a unit.
+    */
+    static final int CHECKPOINT_DEPTH = 6;
+
+    /**
+    The file the checkpoint is written to.
+    */
+    final File file;
+
+    /**
+    The number of milliseconds between writes.
+    */
+    final long interval;
+
+    /**
+    The key of the polyform of every finished unit, mapped to the number of polyforms visited in it.
+    */
+    final ConcurrentHashMap<Long, Long> finished = new ConcurrentHashMap<Long, Long>();
+
+    /**
+    The p, q, rings, tiles, bound, shard index and number of shards of the search, in the order they are saved,
+    or null before the search starts if the checkpoint is new.
+    */
+    int[] search;
+
+    /**
+    The best polyform read from the file, or null if there was none.
+    */
+    PolyformFinder.Candidate saved;
+
+    /**
+    The best polyform of the running search.
+    */
+    AtomicReference<PolyformFinder.Candidate> best;
+
+    /**
+    Writes the checkpoint in the background while the search runs.
+    */
+    ScheduledExecutorService writer;
+
+    /**
+    The first error from writing in the background, or null if there was none.
+    */
+    volatile IOException failure;
+
+    /**
+    Makes a new checkpoint that will be written to the given file, replacing what it held.
+    @param file the file to write the checkpoint to
+    @param interval the number of milliseconds between writes
+    @throws IllegalArgumentException if the interval is not positive
+    */
+    public SearchCheckpoint(File file, long interval){
+        if(interval <= 0)
+            throw new IllegalArgumentException("the time between checkpoints must be positive");
+        this.file = file;
+        this.interval = interval;
+    }
+
+    /**
+    Reads a checkpoint that was written by an earlier search, so that the search can be resumed and keep
+    writing to the same file.
+    @param file the file the checkpoint was written to
+    @param interval the number of milliseconds between writes
+    @return the checkpoint, with the finished units and best polyform of the earlier search
+    @throws IOException if the file can't be read or is not a checkpoint
+    */
+    public static SearchCheckpoint load(File file, long interval) throws IOException {
+        SearchCheckpoint checkpoint = new SearchCheckpoint(file, interval);
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt() != MAGIC)
+                throw new IOException(file + " is not a search checkpoint");
+            int[] search = new int[7];
+            for(int i = 0; i < 4; i++)
+                search[i] = in.readInt();
+            search[4] = (in.readBoolean() ? 1 : 0);
+            search[5] = in.readInt();
+            search[6] = in.readInt();
+            checkpoint.search = search;
+            int holes = in.readInt();
+            int[] tiles = new int[in.readInt()];
+            for(int i = 0; i < tiles.length; i++)
+                tiles[i] = in.readInt();
+            if(holes >= 0)
+                checkpoint.saved = new PolyformFinder.Candidate(tiles, holes);
+            int units = in.readInt();
+            for(int i = 0; i < units; i++)
+                checkpoint.finished.put(in.readLong(), in.readLong());
+        }
+        return checkpoint;
+    }
+
+    /**
+    Returns the number of finished units.
+    @return the number of units that a resumed search skips
+    */
+    public int finishedUnits(){
+        return finished.size();
+    }
+
+    /**
+    Gets ready to save a search, and starts writing in the background.
+    If the checkpoint was loaded, the search must be the same one, and the best polyform that was saved is given to it.
+    @param plane the compact tessellation that is searched
+    @param tiles the largest number of tiles in a polyform
+    @param bound whether the search skips polyforms that can't beat the best so far
+    @param shard the slice of the search that is searched, or null for all of it
+    @param best where the search keeps its best polyform
+    @throws IllegalArgumentException if the checkpoint was saved by a different search
+    */
+    void start(CompactTessellation plane, int tiles, boolean bound, SearchShard shard, AtomicReference<PolyformFinder.Candidate> best){
+        int[] search = new int[]{plane.p, plane.q, plane.rings, tiles, (bound ? 1 : 0),
+                (shard == null ? 0 : shard.index), (shard == null ? 1 : shard.count)};
+        if(this.search != null && !Arrays.equals(this.search, search))
+            throw new IllegalArgumentException(String.format("the checkpoint is for %s of {%d,%d} with %d rings and %d tiles%s",
+                    (this.search[6] == 1 ? "a search" : "shard " + this.search[5] + "/" + this.search[6]),
+                    this.search[0], this.search[1], this.search[2], this.search[3], (this.search[4] == 1 ? "" : " without the hole bound")));
+        this.search = search;
+        this.best = best;
+        if(saved != null)
+            best.set(saved);
+        writer = Executors.newSingleThreadScheduledExecutor(task -> {
+            Thread thread = new Thread(task, "checkpoint writer");
+            thread.setDaemon(true);
+            return thread;
+        });
+        writer.scheduleWithFixedDelay(() -> {
+            try{
+                write();
+            }
+            catch(IOException e){
+                if(failure == null)
+                    failure = e;
+            }
+        }, interval, interval, TimeUnit.MILLISECONDS);
+    }
+
+    /**
+    Stops writing in the background and writes the checkpoint one last time.
+    @throws UncheckedIOException if this or any earlier write failed
+    */
+    void stop(){
+        writer.shutdown();
+        try{
+            writer.awaitTermination(1, TimeUnit.MINUTES);
+            write();
+        }
+        catch(InterruptedException e){
+            Thread.currentThread().interrupt();
+        }
+        catch(IOException e){
+            if(failure == null)
+                failure = e;
+        }
+        if(failure != null)
+            throw new UncheckedIOException("could not write the checkpoint to " + file, failure);
+    }
+
+    /**
+    Returns the number of polyforms visited in a unit, if it is finished.
+    @param key the key of the polyform the unit searches below
+    @return the number of polyforms visited in the unit, or -1 if it has not been finished
+    */
+    long visitedIn(long key){
+        Long visited = finished.get(key);
+        return (visited == null ? -1 : visited);
+    }
+
+    /**
+    Records that a unit is finished.
+    @param key the key of the polyform the unit searches below
+    @param visited the number of polyforms visited in the unit
+    */
+    void finish(long key, long visited){
+        finished.put(key, visited);
+    }
+
+    /**
+    Writes the finished units and the best polyform to a temporary file, and then moves it over the checkpoint.
+    Units are read before the best polyform, so the best polyform of every unit that is written is already in it.
+    @throws IOException if the file can't be written or moved
+    */
+    synchronized void write() throws IOException {
+        long[] units = new long[2*finished.size()];
+        int count = 0;
+        for(Map.Entry<Long, Long> unit : finished.entrySet()){
+            if(count == units.length)
+                break; // units finished after the array was made are saved next time
+            units[count++] = unit.getKey();
+            units[count++] = unit.getValue();
+        }
+        PolyformFinder.Candidate current = best.get();
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))){
+            out.writeInt(MAGIC);
+            for(int i = 0; i < 4; i++)
+                out.writeInt(search[i]);
+            out.writeBoolean(search[4] == 1);
+            out.writeInt(search[5]);
+            out.writeInt(search[6]);
+            if(current == null){
+                out.writeInt(-1);
+                out.writeInt(0);
+            }
+            else {
+                out.writeInt(current.holes);
+                out.writeInt(current.tiles.length);
+                for(int id : current.tiles)
+                    out.writeInt(id);
+            }
+            out.writeInt(count/2);
+            for(int i = 0; i < count; i++)
+                out.writeLong(units[i]);
+            out.flush();
+            stream.getFD().sync(); // the new checkpoint must be on disk before it replaces the old one
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+}
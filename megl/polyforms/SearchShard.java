@@ -0,0 +1,89 @@
+package megl.polyforms;
+
+/**
+One of N slices of a search for the polyform with the most holes, so that the search can be split between processes
+or machines that share nothing (see PolyformFinder.searchShard). The slices are the subtrees below the polyforms
+with SHARD_DEPTH tiles, which ParallelPolyformEnumerator always makes into separate tasks. Each of these polyforms
+is made once, and its ZobristKeys key decides which shard searches below it, so the slices are the same in every run
+and on every machine. Every shard still makes the polyforms with up to SHARD_DEPTH tiles, since there are few of them.
+The results of the shards are combined with ShardResult.merge.
+*/
+public final class SearchShard {
+    /**
+    The number of tiles of the polyforms whose subtrees are handed out to shards.
+    */
+    static final int SHARD_DEPTH = 5;
+
+    /**
+    Which shard this is, from 0 to count - 1.
+    */
+    final int index;
+
+    /**
+    The number of shards the search is split into.
+    */
+    final int count;
+
+    /**
+    Makes one shard of a search.
+    @param index which shard this is, from 0 to count - 1
+    @param count the number of shards the search is split into
+    @throws IllegalArgumentException if count is less than 1 or index is not from 0 to count - 1
+    */
+    public SearchShard(int index, int count){
+        if(count < 1)
+            throw new IllegalArgumentException("a search needs at least one shard");
+        if(index < 0 || index >= count)
+            throw new IllegalArgumentException(String.format("shard %d is not one of the shards 0 to %d", index, count - 1));
+        this.index = index;
+        this.count = count;
+    }
+
+    /**
+    Reads a shard written as i/N, such as 0/4 for the first of four shards.
+    @param shard the index and number of shards, separated by a slash
+    @return the shard
+    @throws IllegalArgumentException if the text is not of the form i/N with 0 <= i < N
+    */
+    public static SearchShard parse(String shard){
+        int slash = shard.indexOf('/');
+        try{
+            if(slash >= 0)
+                return new SearchShard(Integer.parseInt(shard.substring(0, slash)), Integer.parseInt(shard.substring(slash + 1)));
+        }
+        catch(NumberFormatException e){
+        }
+        throw new IllegalArgumentException("a shard must be written as i/N, but was " + shard);
+    }
+
+    /**
+    Returns which shard this is.
+    @return the index of the shard, from 0 to getCount() - 1
+    */
+    public int getIndex(){
+        return index;
+    }
+
+    /**
+    Returns the number of shards the search is split into.
+    @return the number of shards
+    */
+    public int getCount(){
+        return count;
+    }
+
+    /**
+    Returns true if and only if this shard searches below the polyform with the given key.
+    The keys are already well mixed, so taking them modulo the number of shards spreads the subtrees evenly.
+    @param key the key of a polyform with SHARD_DEPTH tiles
+    @return true iff the subtree below the polyform belongs to this shard
+    */
+    boolean owns(long key){
+        return Long.remainderUnsigned(key, count) == index;
+    }
+
+    @Override
+    public String toString(){
+        return index + "/" + count;
+    }
+}
@@ -0,0 +1,165 @@
+package megl.polyforms;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+The result of one shard of a search for the polyform with the most holes (see PolyformFinder.searchShard), along with
+the search it belongs to, so that the results of every shard can be saved to files and merged into the result of the whole search.
+The best polyform of the whole search is the best of the best polyforms of the shards, since the order of polyforms
+(see PolyformFinder.Candidate) does not depend on which shard found them.
+Every shard makes the polyforms with up to SearchShard.SHARD_DEPTH tiles, but only shard 0 counts them as visited,
+so the visited polyforms of the shards add up to those of a search that was not split, if the hole bound was not used.
+With the hole bound, each shard only prunes with the best polyform it found itself, so the shards together visit more polyforms than one search would.
+The file format, in DataOutputStream order, is
+    the int MAGIC, then p, q, rings and tiles of the search as ints and whether it was bounded as a boolean,
+    the index and number of shards as ints,
+    the number of holes and tiles of the best polyform followed by its tile indices as ints,
+    and the numbers of polyforms visited and pruned as longs.
+*/
+public class ShardResult extends PolyformSearchResult {
+    /**
+    The first int of every shard result file.
+    */
+    static final int MAGIC = 0x50465231;
+
+    /**
+    The p, q, rings, tiles and bound of the search, in the order they are saved.
+    */
+    final int[] search;
+
+    /**
+    The slice of the search this is the result of.
+    */
+    final SearchShard shard;
+
+    ShardResult(int[] search, SearchShard shard, int[] tiles, int holes, long visited, long pruned){
+        super(tiles, holes, search[2] > search[3], visited, pruned);
+        this.search = search;
+        this.shard = shard;
+    }
+
+    /**
+    Returns the slice of the search this is the result of.
+    @return the shard that was searched
+    */
+    public SearchShard getShard(){
+        return shard;
+    }
+
+    /**
+    Returns the p, q, rings and tiles of the search.
+    @return an array of p, q, the number of rings and the largest number of tiles in a polyform
+    */
+    public int[] getSearch(){
+        return new int[]{search[0], search[1], search[2], search[3]};
+    }
+
+    /**
+    Returns true if the search skipped polyforms with the hole bound.
+    @return whether the search was bounded
+    */
+    public boolean isBounded(){
+        return search[4] == 1;
+    }
+
+    /**
+    Writes the result to a temporary file next to the given one, and then moves it over the file.
+    @param file the file to write the result to
+    @throws IOException if the file can't be written or moved
+    */
+    public void write(File file) throws IOException {
+        File temp = new File(file.getPath() + ".tmp");
+        FileOutputStream stream = new FileOutputStream(temp);
+        try(DataOutputStream out = new DataOutputStream(new BufferedOutputStream(stream))){
+            out.writeInt(MAGIC);
+            for(int i = 0; i < 4; i++)
+                out.writeInt(search[i]);
+            out.writeBoolean(search[4] == 1);
+            out.writeInt(shard.index);
+            out.writeInt(shard.count);
+            out.writeInt(holes);
+            out.writeInt(tiles.length);
+            for(int id : tiles)
+                out.writeInt(id);
+            out.writeLong(visited);
+            out.writeLong(pruned);
+            out.flush();
+            stream.getFD().sync();
+        }
+        Files.move(temp.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+    }
+
+    /**
+    Reads a result written by write(File).
+    @param file the file the result was written to
+    @return the result of the shard
+    @throws IOException if the file can't be read or is not a shard result
+    */
+    public static ShardResult read(File file) throws IOException {
+        try(DataInputStream in = new DataInputStream(new BufferedInputStream(new FileInputStream(file)))){
+            if(in.readInt() != MAGIC)
+                throw new IOException(file + " is not a shard result");
+            int[] search = new int[5];
+            for(int i = 0; i < 4; i++)
+                search[i] = in.readInt();
+            search[4] = (in.readBoolean() ? 1 : 0);
+            SearchShard shard;
+            try{
+                shard = new SearchShard(in.readInt(), in.readInt());
+            }
+            catch(IllegalArgumentException e){
+                throw new IOException(file + " has an invalid shard: " + e.getMessage());
+            }
+            int holes = in.readInt();
+            int[] tiles = new int[in.readInt()];
+            for(int i = 0; i < tiles.length; i++)
+                tiles[i] = in.readInt();
+            return new ShardResult(search, shard, tiles, holes, in.readLong(), in.readLong());
+        }
+    }
+
+    /**
+    Combines the results of every shard of a search into the result of the whole search, as if it was one shard of one.
+    @param results the result of each shard, in any order
+    @return the best polyform of every shard, with the visited and pruned polyforms of every shard added up
+    @throws IllegalArgumentException if the results are from different searches, or some shard is missing or given twice
+    */
+    public static ShardResult merge(List<ShardResult> results){
+        if(results.isEmpty())
+            throw new IllegalArgumentException("there are no shard results to merge");
+        ShardResult first = results.get(0);
+        int count = first.shard.count;
+        ShardResult[] shards = new ShardResult[count];
+        for(ShardResult result : results){
+            if(!Arrays.equals(result.search, first.search) || result.shard.count != count)
+                throw new IllegalArgumentException(String.format("shard %s is from a different search than shard %s", result.shard, first.shard));
+            if(shards[result.shard.index] != null)
+                throw new IllegalArgumentException("shard " + result.shard + " is given more than once");
+            shards[result.shard.index] = result;
+        }
+        for(int i = 0; i < count; i++)
+            if(shards[i] == null)
+                throw new IllegalArgumentException(String.format("shard %d/%d is missing", i, count));
+        PolyformFinder.Candidate best = null, candidate;
+        long visited = 0, pruned = 0;
+        for(ShardResult result : shards){
+            candidate = new PolyformFinder.Candidate(result.tiles, result.holes);
+            if(best == null || candidate.isBetterThan(best))
+                best = candidate;
+            visited += result.visited;
+            pruned += result.pruned;
+        }
+        return new ShardResult(first.search, new SearchShard(0, 1), best.tiles, best.holes, visited, pruned);
+    }
+}
@@ -1,8 +1,10 @@
 package megl.polyforms;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.Stack;
 import java.util.HashSet;
+import java.util.concurrent.ForkJoinPool;
 
 /**
 A Class representing some number of rings of tiles in the {p,q} tessellation.
@@ -41,6 +43,22 @@ public class Tessellation {
     */
     ArrayList<Tile> tessellation;
     
+    /**
+    A compact copy of this tessellation, made the first time it is requested by getCompact().
+    */
+    CompactTessellation compact;
+    
+    /**
+    If true, rings past the current outermost ring are made when something first needs them,
+    see getAdjacent(Tile, int) and ensureRing(int).
+    */
+    boolean lazy;
+    
+    /**
+    The tiles of the current outermost ring, in ascending ringPos order. Needed to make the next ring.
+    */
+    ArrayList<Tile> outerRing;
+    
     /**
     Specifies the parameters of the tessellation. Requires p and q to be greater than 3 due to edge cases, and at least a second ring.
     @param p the number of Tiles that share an edge with any given Tile
@@ -48,14 +66,33 @@ public class Tessellation {
     @param rings the number of rings that will be generated
     */
     public Tessellation(int p, int q, int rings){
+        this(p, q, rings, false);
+    }
+    
+    /**
+    Specifies the parameters of the tessellation. If lazy, the given number of rings are made immediately 
+    and more rings are added whenever a search or navigation reaches past the outermost ring.
+    A lazy tessellation is single threaded: a ring is added by whichever thread first needs it, without any locking,
+    while other threads may be reading the tiles it changes. Before several threads share one, every ring they can reach
+    should be made with ensureRing(int), as every multithreaded search in PolyformFinder and PolyformCensus does.
+    Once no more rings are added, any number of threads can read it.
+    @param p the number of Tiles that share an edge with any given Tile
+    @param q the number of Tiles that share any given vertex
+    @param rings the number of rings that will be generated immediately
+    @param lazy true if rings should be added when they are needed
+    */
+    public Tessellation(int p, int q, int rings, boolean lazy){
         if(p < 3 || q < 3 || rings < 1)
             throw new IllegalArgumentException("This case is not covered. Required: p >= 3, q => 3, rings > 0.");
+        if((p-2)*(q-2) > 4 && !new RingSizeCalculator(p, q).fitsInInt(rings))
+            throw new IllegalArgumentException("This many rings have more tiles than can be indexed by an int.");
         this.p = p;
         this.q = q;
         this.rings = rings;
         this.ringSizes = new int[rings+1];
         ringSizes[0] = 1;
         ringSizes[1] = p*q -(2*p); // p + p*(q-3)
+        this.lazy = lazy;
         tessellation = makeTessellation();
     }
     
@@ -79,9 +116,56 @@ public class Tessellation {
             currentRing = new ArrayList<Tile>();
             ringSizes[ring] = makeNextRing(tiles, currentRing, previousRing, ring);
         }
+        outerRing = currentRing;
         return tiles;
     }
     
+    /**
+    Adds one more ring of tiles outside the current outermost ring, linking it to the tiles already made.
+    Any compact copy of this tessellation is discarded because it no longer matches.
+    Not thread safe: no other thread may use this tessellation while a ring is added.
+    */
+    public void addRing(){
+        ArrayList<Tile> nextRing = new ArrayList<Tile>();
+        ringSizes = Arrays.copyOf(ringSizes, rings+2);
+        ringSizes[rings+1] = makeNextRing(tessellation, nextRing, outerRing, rings+1);
+        outerRing = nextRing;
+        rings++;
+        compact = null;
+    }
+    
+    /**
+    Makes sure that the given ring has been made. If this tessellation is lazy, rings are added until it exists.
+    Adding rings is not thread safe (see addRing()), but when the ring was already made this only reads,
+    so threads sharing a tessellation can call it for rings that were made before they started.
+    @param ring the ring that is needed
+    @return true if and only if the ring exists
+    */
+    public boolean ensureRing(int ring){
+        if(ring <= rings)
+            return ring >= 0;
+        if(!lazy)
+            return false;
+        while(rings < ring)
+            addRing();
+        return true;
+    }
+    
+    /**
+    Returns the tile that shares the edge at the given index of the tile's adjacent array.
+    If this tessellation is lazy and the tile is in the outermost ring, the next ring is made when it is first needed,
+    which is not thread safe (see addRing()). Threads sharing a lazy tessellation should only call this once the ring
+    past every tile they reach has been made with ensureRing(int).
+    @param tile a tile of this tessellation
+    @param i the index in the tile's adjacent array
+    @return the adjacent tile, or null if it is not in the tessellation
+    */
+    public Tile getAdjacent(Tile tile, int i){
+        if(tile.adjacent[i] == null && lazy && tile.ringNum == rings)
+            addRing();
+        return tile.adjacent[i];
+    }
+    
     /**
     Helper for makeTessellation(). Creates the second ring, ring 1.
     @param tiles the list of tiles in the tessellation
@@ -124,6 +208,7 @@ public class Tessellation {
     
     /**
     Helper for makeTessellation(). Creates the next ring of tiles after at least two rings have been made.
+    Large rings are made by a ParallelRingBuilder using the common ForkJoinPool.
     @param tiles the Tiles of the tessellation
     @param currentRing the Tiles in the ring being created
     @param previousRing the Tiles that are in the previous ring
@@ -131,6 +216,8 @@ public class Tessellation {
     @return the number of tiles that were generated for this ring
     */
     private int makeNextRing(ArrayList<Tile> tiles, ArrayList<Tile> currentRing, ArrayList<Tile> previousRing, int ring){
+        if(previousRing.size() >= ParallelRingBuilder.THRESHOLD && ForkJoinPool.getCommonPoolParallelism() > 1)
+            return new ParallelRingBuilder(p, q, ForkJoinPool.commonPool()).makeNextRing(tiles, currentRing, previousRing, ring);
         if(p == 3)
             return pThreeTessellation(tiles, currentRing, previousRing, ring);
         if(q == 3)
@@ -304,6 +391,18 @@ public class Tessellation {
         return null;
     }
     
+    /**
+    Returns the absolute index of the tile at the given tile's coordinates, which is its position in the list of tiles
+    (see Tile.getAbsoluteIndex).
+    @param tile the tile whose index will be returned. Only its ringNum and ringPos are used
+    @return the index of the tile, or -1 if it is not in the tessellation
+    */
+    public int indexOf(Tile tile){
+        if(tile.ringNum < 0 || tile.ringNum > rings || tile.ringPos < 0 || tile.ringPos >= ringSizes[tile.ringNum])
+            return -1;
+        return tile.getAbsoluteIndex(ringSizes);
+    }
+    
     /**
     Returns the tile in this tessellation that matches the given tile's coordinates.
     If no such tile exists, returns null.
@@ -323,4 +422,32 @@ public class Tessellation {
     public ArrayList<Tile> getTessellation(){
         return this.tessellation;
     }
+    
+    /**
+    Returns the number of rings that have been made, not including ring 0.
+    @return the number of rings in the tessellation
+    */
+    public int getRings(){
+        return rings;
+    }
+    
+    /**
+    Returns true if and only if rings are added to this tessellation when they are needed.
+    @return true iff this tessellation is lazy
+    */
+    public boolean isLazy(){
+        return lazy;
+    }
+    
+    /**
+    Returns a compact copy of this tessellation that identifies tiles by their absolute index.
+    It is made the first time this is called and reused until another ring is added.
+    @return a CompactTessellation with the same tiles and adjacencies as this one
+    */
+    public CompactTessellation getCompact(){
+        CompactTessellation current = compact; // read once, so threads sharing the tessellation never see it change in between
+        if(current == null)
+            compact = current = new CompactTessellation(this);
+        return current;
+    }
 }
\ No newline at end of file
@@ -0,0 +1,384 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+Adds the vertices and edges of a tessellation to its tiles, each identified by an index, so polyforms can be treated as
+closed regions of the plane made of vertices, edges and faces.
+The neighbors of each tile are first put in clockwise order. The adjacent array of a Tile does not store them that way,
+but the order follows from how Tessellation fills it in:
+    Ring 0 lists ring 1 counterclockwise, so it is read backwards.
+    Other tiles go from the previous ring to the next tile in the ring, then along the next ring in decreasing ringPos,
+        then to the previous tile in the ring. For primary tiles (and every tile when p = 3) that is slots
+        0, 1, p-2, ..., 2, p-1, and for secondary tiles it is 0, 1, p-1, ..., 2 since slot 0 is the previous tile in the ring.
+    When q = 3, the tiles of the next ring are stored differently. A primary tile's order is 0, 1, p-3, ..., 2, p-2, p-1,
+        and a secondary tile touches two tiles of the previous ring, giving 0, p-2, 1, p-4, ..., 2, p-3, p-1.
+Corner i of a tile is the vertex between its clockwise neighbors i and i+1, and edge i is the edge it shares with neighbor i.
+Corners that are the same vertex are found by walking around it from tile to tile, and every walk around a vertex
+in the interior of the tessellation is checked to visit exactly q tiles.
+*/
+public class TessellationComplex {
+    /**
+    The compact tessellation whose tile indices are used.
+    */
+    final CompactTessellation plane;
+
+    /**
+    Specifies how many tiles share an edge with any given tile.
+    */
+    final int p;
+
+    /**
+    Specifies how many tiles share any given vertex.
+    */
+    final int q;
+
+    /**
+    The neighbors of each tile in clockwise order: neighbor i of tile id is order[id*p + i], or -1 if it was not made.
+    Ring 0 starts at tile (1,0), and every other tile starts at its first neighbor in the previous ring.
+    */
+    final int[] order;
+
+    /**
+    The vertex at each corner of each tile: corner i of tile id is tileVertices[id*p + i].
+    */
+    final int[] tileVertices;
+
+    /**
+    The edge on each side of each tile: the edge tile id shares with neighbor i is tileEdges[id*p + i].
+    */
+    final int[] tileEdges;
+
+    /**
+    The number of vertices.
+    */
+    final int vertices;
+
+    /**
+    The number of edges.
+    */
+    final int edges;
+
+    /**
+    The two tiles on either side of each edge: edgeTiles[2*e] and edgeTiles[2*e + 1], the second being -1 on the edge of the tessellation.
+    */
+    final int[] edgeTiles;
+
+    /**
+    The start of each vertex's tiles in vertexTiles. Has one more entry than there are vertices.
+    */
+    final int[] vertexOffsets;
+
+    /**
+    The tiles around each vertex, grouped by vertex in ascending order of index.
+    */
+    final int[] vertexTiles;
+
+    /**
+    Adds vertices and edges to the given tessellation.
+    @param tessellation the tessellation whose tiles will be used
+    @throws IllegalStateException if some vertex in the interior does not have q tiles around it
+    */
+    public TessellationComplex(Tessellation tessellation){
+        this.plane = tessellation.getCompact();
+        this.p = plane.p;
+        this.q = plane.q;
+        int n = plane.size();
+
+        order = new int[n*p];
+        Tile tile;
+        for(int id = 0; id < n; id++){
+            tile = tessellation.tessellation.get(id);
+            int[] slots = clockwiseSlots(tile);
+            for(int i = 0; i < p; i++)
+                order[id*p + i] = plane.index(tile.adjacent[slots[i]]);
+        }
+
+        int[] corners = new int[n*p]; // a union-find forest over the corners of every tile
+        for(int c = 0; c < corners.length; c++)
+            corners[c] = c;
+        int next, at;
+        for(int id = 0; id < n; id++)
+            for(int i = 0; i < p; i++){
+                next = order[id*p + (i+1) % p]; // the vertex at corner i is also a corner of this neighbor
+                if(next < 0)
+                    continue;
+                at = positionOf(next, id);
+                union(corners, id*p + i, next*p + at);
+            }
+
+        tileVertices = new int[n*p];
+        int[] numbers = new int[n*p]; // the vertex number given to each root corner
+        Arrays.fill(numbers, -1);
+        int count = 0;
+        int root;
+        for(int c = 0; c < corners.length; c++){
+            root = find(corners, c);
+            if(numbers[root] < 0)
+                numbers[root] = count++;
+            tileVertices[c] = numbers[root];
+        }
+        vertices = count;
+
+        vertexOffsets = new int[vertices + 1];
+        for(int c = 0; c < tileVertices.length; c++)
+            vertexOffsets[tileVertices[c] + 1]++;
+        for(int v = 0; v < vertices; v++){
+            vertexOffsets[v+1] += vertexOffsets[v];
+            if(vertexOffsets[v+1] - vertexOffsets[v] > q)
+                throw new IllegalStateException("vertex " + v + " has more than q tiles around it");
+        }
+        vertexTiles = new int[tileVertices.length];
+        int[] filled = Arrays.copyOf(vertexOffsets, vertices);
+        for(int c = 0; c < tileVertices.length; c++)
+            vertexTiles[filled[tileVertices[c]]++] = c / p;
+        for(int v = 0; v < vertices; v++)
+            if(vertexDegree(v) != q && !touchesEdge(v))
+                throw new IllegalStateException("vertex " + v + " does not have q tiles around it");
+
+        tileEdges = new int[n*p];
+        int[] sides = new int[2*n*p];
+        count = 0;
+        for(int id = 0; id < n; id++)
+            for(int i = 0; i < p; i++){
+                next = order[id*p + i];
+                if(next >= 0 && next < id){ // the edge was numbered from the other side
+                    tileEdges[id*p + i] = tileEdges[next*p + positionOf(next, id)];
+                    sides[2*tileEdges[id*p + i] + 1] = id;
+                    continue;
+                }
+                tileEdges[id*p + i] = count;
+                sides[2*count] = id;
+                sides[2*count + 1] = -1;
+                count++;
+            }
+        edges = count;
+        edgeTiles = Arrays.copyOf(sides, 2*edges);
+    }
+
+    /**
+    Creates a {p,q} tessellation with the given number of rings and adds vertices and edges to it.
+    @param p the number of Tiles that share an edge with any given Tile
+    @param q the number of Tiles that share any given vertex
+    @param rings the number of rings that will be generated
+    */
+    public TessellationComplex(int p, int q, int rings){
+        this(new Tessellation(p, q, rings));
+    }
+
+    /**
+    Returns the slots of the tile's adjacent array in clockwise order. See the description of this class.
+    */
+    private int[] clockwiseSlots(Tile tile){
+        int[] slots = new int[p];
+        int n = 0;
+        if(tile.ringNum == 0){
+            slots[n++] = 0;
+            for(int i = p-1; i > 0; i--)
+                slots[n++] = i;
+            return slots;
+        }
+        boolean qThree = (q == 3 && p > 3);
+        slots[n++] = 0;
+        if(qThree && !tile.wasPrimary){
+            slots[n++] = p-2;
+            slots[n++] = 1;
+            for(int i = p-4; i >= 2; i--)
+                slots[n++] = i;
+            slots[n++] = p-3;
+            slots[n++] = p-1;
+        }
+        else if(qThree){
+            slots[n++] = 1;
+            slots[n++] = p-3;
+            for(int i = p-4; i >= 2; i--)
+                slots[n++] = i;
+            slots[n++] = p-2;
+            slots[n++] = p-1;
+        }
+        else if(tile.wasPrimary || p == 3){
+            slots[n++] = 1;
+            for(int i = p-2; i >= 2; i--)
+                slots[n++] = i;
+            slots[n++] = p-1;
+        }
+        else {
+            slots[n++] = 1;
+            for(int i = p-1; i >= 2; i--)
+                slots[n++] = i;
+        }
+        return slots;
+    }
+
+    /**
+    Returns the position of a neighbor in the tile's clockwise order, or -1 if they are not neighbors.
+    @param id the index of a tile
+    @param neighbor the index of another tile
+    @return i such that neighbor i of the tile is the other tile
+    */
+    public int positionOf(int id, int neighbor){
+        for(int i = 0; i < p; i++)
+            if(order[id*p + i] == neighbor)
+                return i;
+        return -1;
+    }
+
+    /**
+    Returns true if and only if some tile around the vertex is on the edge of the tessellation.
+    */
+    private boolean touchesEdge(int v){
+        for(int k = vertexOffsets[v]; k < vertexOffsets[v+1]; k++)
+            if(plane.isBoundary(vertexTiles[k]))
+                return true;
+        return false;
+    }
+
+    private static int find(int[] parent, int x){
+        while(parent[x] != x){
+            parent[x] = parent[parent[x]];
+            x = parent[x];
+        }
+        return x;
+    }
+
+    private static void union(int[] parent, int a, int b){
+        a = find(parent, a);
+        b = find(parent, b);
+        if(a < b)
+            parent[b] = a;
+        else if(b < a)
+            parent[a] = b;
+    }
+
+    /**
+    Returns the compact tessellation whose tile indices are used.
+    @return the compact copy of the tessellation
+    */
+    public CompactTessellation getPlane(){
+        return plane;
+    }
+
+    /**
+    Returns the number of vertices, including those on the edge of the tessellation with fewer than q tiles around them.
+    @return the number of vertices
+    */
+    public int numVertices(){
+        return vertices;
+    }
+
+    /**
+    Returns the number of edges, including those on the edge of the tessellation with only one tile next to them.
+    @return the number of edges
+    */
+    public int numEdges(){
+        return edges;
+    }
+
+    /**
+    Returns a neighbor of a tile in clockwise order.
+    @param id the index of a tile
+    @param i the position of the neighbor, 0 <= i < p
+    @return the index of the neighbor, or -1 if it was not made
+    */
+    public int getNeighbor(int id, int i){
+        return order[id*p + i];
+    }
+
+    /**
+    Returns the vertex at a corner of a tile, which is between its clockwise neighbors i and i+1.
+    @param id the index of a tile
+    @param i the corner, 0 <= i < p
+    @return the index of the vertex
+    */
+    public int getVertex(int id, int i){
+        return tileVertices[id*p + i];
+    }
+
+    /**
+    Returns the edge between a tile and its clockwise neighbor i.
+    @param id the index of a tile
+    @param i the side, 0 <= i < p
+    @return the index of the edge
+    */
+    public int getEdge(int id, int i){
+        return tileEdges[id*p + i];
+    }
+
+    /**
+    Returns the number of tiles around a vertex, which is q unless it is on the edge of the tessellation.
+    @param v the index of a vertex
+    @return the number of tiles that have the vertex as a corner
+    */
+    public int vertexDegree(int v){
+        return vertexOffsets[v+1] - vertexOffsets[v];
+    }
+
+    /**
+    Returns one of the tiles around a vertex.
+    @param v the index of a vertex
+    @param k which tile will be returned, 0 <= k < vertexDegree(v)
+    @return the index of the tile
+    */
+    public int vertexTile(int v, int k){
+        return vertexTiles[vertexOffsets[v] + k];
+    }
+
+    /**
+    Returns one of the two tiles on either side of an edge.
+    @param e the index of an edge
+    @param k 0 or 1
+    @return the index of the tile, or -1 if the edge is on the edge of the tessellation and k is 1
+    */
+    public int edgeTile(int e, int k){
+        return edgeTiles[2*e + k];
+    }
+
+    /**
+    Returns every tile that shares at least a vertex with the given tile, not including the tile itself.
+    These are the tiles that can be connected to it in a polyform.
+    @param id the index of a tile
+    @return the indices of the tiles, in ascending order
+    */
+    public int[] vertexNeighbors(int id){
+        int[] found = new int[p*(q-1)];
+        int count = 0;
+        int v, other;
+        for(int i = 0; i < p; i++){
+            v = tileVertices[id*p + i];
+            for(int k = vertexOffsets[v]; k < vertexOffsets[v+1]; k++){
+                other = vertexTiles[k];
+                if(other != id && !contains(found, count, other))
+                    found[count++] = other;
+            }
+        }
+        found = Arrays.copyOf(found, count);
+        Arrays.sort(found);
+        return found;
+    }
+
+    /**
+    Returns true if and only if the two tiles share at least a vertex.
+    @param a the index of a tile
+    @param b the index of another tile
+    @return true iff the tiles are different and meet at a vertex or an edge
+    */
+    public boolean areVertexAdjacent(int a, int b){
+        if(a == b)
+            return false;
+        int v;
+        for(int i = 0; i < p; i++){
+            v = tileVertices[a*p + i];
+            for(int k = vertexOffsets[v]; k < vertexOffsets[v+1]; k++)
+                if(vertexTiles[k] == b)
+                    return true;
+        }
+        return false;
+    }
+
+    private static boolean contains(int[] array, int length, int value){
+        for(int i = 0; i < length; i++)
+            if(array[i] == value)
+                return true;
+        return false;
+    }
+}
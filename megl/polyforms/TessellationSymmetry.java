@@ -0,0 +1,243 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+import java.util.PrimitiveIterator;
+
+/**
+Contains the symmetries of a tessellation that keep tile (0,0) in place, which form a dihedral group of order 2p.
+Each symmetry is stored as a permutation table: images[g][id] is the index of the tile that the tile with index id is sent to.
+    Symmetries 0 through p-1 are rotations. Rotation k moves every tile k/p of the way around its ring,
+        since every ring is made of p identical copies of the same pattern of tiles.
+    Symmetries p through 2p-1 are reflections. Symmetry p+k is rotation k followed by a reflection that fixes tile (1,0).
+        The reflection reverses each ring, sending ringPos to (c - ringPos) mod the ring size, where the constant c of
+        each ring is found by checking which choice keeps every tile next to the same tiles as before.
+Symmetry 0 is always the identity.
+*/
+public class TessellationSymmetry {
+    /**
+    The compact tessellation that the symmetries act on.
+    */
+    final CompactTessellation plane;
+
+    /**
+    The number of symmetries, 2p.
+    */
+    final int order;
+
+    /**
+    The permutation tables. images[g][id] is the image of tile id under symmetry g.
+    */
+    final int[][] images;
+
+    /**
+    The result of applying two symmetries in a row. products[a][b] is the symmetry that applies b, then a.
+    */
+    final int[][] products;
+
+    /**
+    Finds every symmetry of the given tessellation that fixes tile (0,0).
+    Tables only cover the rings that have been made, so lazy tessellations need a new instance after they grow.
+    @param tessellation the tessellation whose symmetries will be found
+    */
+    public TessellationSymmetry(Tessellation tessellation){
+        this(tessellation.getCompact());
+    }
+
+    /**
+    Finds every symmetry of the given compact tessellation that fixes tile (0,0).
+    @param plane the compact tessellation whose symmetries will be found
+    */
+    public TessellationSymmetry(CompactTessellation plane){
+        this.plane = plane;
+        int p = plane.p;
+        this.order = 2*p;
+        this.images = new int[order][];
+
+        int[] reflection = findReflection();
+        for(int k = 0; k < p; k++){
+            images[k] = new int[plane.size()];
+            for(int ring = 0; ring <= plane.rings; ring++){
+                int size = plane.ringSizes[ring];
+                int shift = (ring == 0 ? 0 : k * (size / p));
+                for(int pos = 0; pos < size; pos++)
+                    images[k][plane.ringOffsets[ring] + pos] = plane.ringOffsets[ring] + (pos + shift) % size;
+            }
+            images[p+k] = new int[plane.size()];
+            for(int id = 0; id < plane.size(); id++)
+                images[p+k][id] = reflection[images[k][id]];
+        }
+
+        for(int g = 0; g < order; g++)
+            if(!preservesAdjacency(images[g], 0, plane.size()))
+                throw new IllegalStateException("symmetry " + g + " of the {" + p + "," + plane.q + "} tessellation is not valid");
+
+        this.products = new int[order][order];
+        for(int a = 0; a < order; a++)
+            for(int b = 0; b < order; b++)
+                products[a][b] = identify(images[a], images[b]);
+    }
+
+    /**
+    Finds the reflection that fixes tile (0,0) and tile (1,0), one ring at a time.
+    Each ring is reversed about some constant, and only the neighbors in the ring below of the first tile of the ring
+    have to be tried as that constant's image.
+    @return the permutation table of the reflection
+    */
+    private int[] findReflection(){
+        int[] reflection = new int[plane.size()];
+        reflection[0] = 0;
+        for(int ring = 1; ring <= plane.rings; ring++){
+            int first = plane.ringOffsets[ring];
+            int size = plane.ringSizes[ring];
+            int below = -1;
+            for(int i = 0; i < plane.degree(first); i++)
+                if(plane.neighbor(first, i) < first)
+                    below = plane.neighbor(first, i);
+            if(below < 0)
+                throw new IllegalStateException("the first tile of ring " + ring + " is not next to the previous ring");
+
+            boolean found = false;
+            int belowImage = reflection[below];
+            for(int i = 0; i < plane.degree(belowImage) && !found; i++){
+                int candidate = plane.neighbor(belowImage, i);
+                if(candidate < first || candidate >= first + size)
+                    continue;
+                int c = candidate - first; // the image of ringPos 0
+                for(int pos = 0; pos < size; pos++)
+                    reflection[first + pos] = first + Math.floorMod(c - pos, size);
+                found = preservesAdjacency(reflection, first, first + size);
+            }
+            if(!found)
+                throw new IllegalStateException("no reflection of ring " + ring + " matches the rings inside it");
+        }
+        return reflection;
+    }
+
+    /**
+    Checks that the given map sends every pair of neighboring tiles to a pair of neighboring tiles,
+    for every tile in the given range and each of its neighbors with a lower index.
+    @param map the images of the tiles, which must be filled in for every index below to
+    @param from the first tile that will be checked
+    @param to one past the last tile that will be checked
+    @return true iff every checked adjacency is preserved
+    */
+    private boolean preservesAdjacency(int[] map, int from, int to){
+        for(int id = from; id < to; id++){
+            if(plane.degree(map[id]) != plane.degree(id))
+                return false;
+            for(int i = 0; i < plane.degree(id); i++){
+                int other = plane.neighbor(id, i);
+                if(other < to && !areNeighbors(map[id], map[other]))
+                    return false;
+            }
+        }
+        return true;
+    }
+
+    /**
+    Returns true if and only if the two tiles share an edge.
+    */
+    private boolean areNeighbors(int a, int b){
+        for(int i = 0; i < plane.degree(a); i++)
+            if(plane.neighbor(a, i) == b)
+                return true;
+        return false;
+    }
+
+    /**
+    Finds which symmetry is the result of applying second, then first. A symmetry is determined by where it sends
+    two neighboring tiles of ring 1, so only those are compared.
+    */
+    private int identify(int[] first, int[] second){
+        int a = first[second[1]];
+        int b = first[second[2]];
+        for(int g = 0; g < order; g++)
+            if(images[g][1] == a && images[g][2] == b)
+                return g;
+        throw new IllegalStateException("the symmetries do not form a group");
+    }
+
+    /**
+    Returns the number of symmetries, which is 2p.
+    @return the order of the group of symmetries fixing (0,0)
+    */
+    public int order(){
+        return order;
+    }
+
+    /**
+    Returns true if and only if the given symmetry reverses the direction of the rings.
+    @param g a symmetry
+    @return true iff g is a reflection
+    */
+    public boolean isReflection(int g){
+        return g >= plane.p;
+    }
+
+    /**
+    Returns the index of the tile that the given tile is sent to.
+    @param g a symmetry, 0 <= g < order()
+    @param id the index of a tile
+    @return the index of the image of the tile
+    */
+    public int image(int g, int id){
+        return images[g][id];
+    }
+
+    /**
+    Returns the symmetry that applies b, then a.
+    @param a the symmetry applied second
+    @param b the symmetry applied first
+    @return the composition of a and b
+    */
+    public int compose(int a, int b){
+        return products[a][b];
+    }
+
+    /**
+    Returns the symmetry that undoes the given one.
+    @param g a symmetry
+    @return the inverse of g
+    */
+    public int inverse(int g){
+        for(int h = 0; h < order; h++)
+            if(products[h][g] == 0)
+                return h;
+        throw new IllegalStateException("symmetry " + g + " has no inverse");
+    }
+
+    /**
+    Applies a symmetry to a polyform given by its tile indices.
+    @param g a symmetry
+    @param tiles the indices of the tiles of a polyform
+    @return the indices of the image's tiles, in ascending order
+    */
+    public int[] apply(int g, int[] tiles){
+        int[] image = new int[tiles.length];
+        for(int i = 0; i < tiles.length; i++)
+            image[i] = images[g][tiles[i]];
+        Arrays.sort(image);
+        return image;
+    }
+
+    /**
+    Applies a symmetry to a polyform. The new polyform is made of tiles from the given tessellation.
+    @param g a symmetry
+    @param polyform the polyform that will be moved
+    @param tessellation the tessellation these symmetries were found for
+    @return the image of the polyform
+    @throws IllegalArgumentException if some tile of the polyform is not in the tessellation
+    */
+    public Polyform apply(int g, Polyform polyform, Tessellation tessellation){
+        TileSet image = new TileSet();
+        int id;
+        PrimitiveIterator.OfInt tiles = polyform.getAnimal().iterator();
+        while(tiles.hasNext()){
+            id = tiles.nextInt();
+            if(id >= plane.size())
+                throw new IllegalArgumentException(polyform.plane.tessellation.get(id) + " is not in the tessellation");
+            image.add(images[g][id]);
+        }
+        return new Polyform(tessellation, image);
+    }
+}
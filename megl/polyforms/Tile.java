@@ -187,7 +187,7 @@ public class Tile implements Comparable<Tile> {
     
     @Override
     public int hashCode(){
-        return String.format("%d%d", ringPos, ringNum).hashCode();
+        return Long.hashCode(ZobristKeys.key(ringNum, ringPos));
     }
     
     /**
@@ -0,0 +1,626 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+import java.util.NoSuchElementException;
+import java.util.PrimitiveIterator;
+
+/**
+A set of tile indices (see Tile.getAbsoluteIndex) that stores no objects per tile.
+Indices are split into blocks of 65536 by their upper 16 bits, and each block that has any tiles is stored in one of two ways:
+    Blocks with at most ARRAY_MAX tiles store the lower 16 bits of each index in a sorted char array,
+        which takes 2 bytes per tile and is searched by binary search.
+    Fuller blocks store a bitmap of 1024 longs, which takes 8 KB no matter how many tiles it has and answers in O(1).
+A block switches to a bitmap when it grows past ARRAY_MAX tiles and back to an array when it shrinks below half of that,
+so alternating additions and removals never convert a block back and forth.
+Polyforms and the rings near (0,0) are small, so most sets are a single short array, while large holes
+and flooded regions become bitmaps.
+*/
+public class TileSet implements Iterable<Integer> {
+    /**
+    The most tiles that a block stores as a sorted array.
+    */
+    static final int ARRAY_MAX = 4096;
+
+    /**
+    The number of longs in the bitmap of a block.
+    */
+    static final int WORDS = 1024;
+
+    /**
+    The upper 16 bits of the indices in each block, in ascending order.
+    */
+    int[] keys;
+
+    /**
+    The sorted lower 16 bits of the indices in each block, or null if the block is a bitmap.
+    */
+    char[][] arrays;
+
+    /**
+    The bitmap of each block, or null if the block is an array.
+    */
+    long[][] bitmaps;
+
+    /**
+    The number of tiles in each block.
+    */
+    int[] counts;
+
+    /**
+    The number of blocks that have tiles.
+    */
+    int blocks;
+
+    /**
+    The number of tiles in the set.
+    */
+    int cardinality;
+
+    /**
+    Creates an empty set.
+    */
+    public TileSet(){
+        keys = new int[1];
+        arrays = new char[1][];
+        bitmaps = new long[1][];
+        counts = new int[1];
+    }
+
+    /**
+    Creates a set of the given indices.
+    @param ids the indices of the tiles, which may be unsorted and have duplicates
+    */
+    public TileSet(int[] ids){
+        this();
+        for(int id : ids)
+            add(id);
+    }
+
+    /**
+    Creates a copy of the given set that shares no arrays with it.
+    @param other the set that will be copied
+    */
+    public TileSet(TileSet other){
+        blocks = other.blocks;
+        cardinality = other.cardinality;
+        keys = Arrays.copyOf(other.keys, Math.max(1, blocks));
+        counts = Arrays.copyOf(other.counts, keys.length);
+        arrays = new char[keys.length][];
+        bitmaps = new long[keys.length][];
+        for(int i = 0; i < blocks; i++){
+            if(other.bitmaps[i] != null)
+                bitmaps[i] = other.bitmaps[i].clone();
+            else
+                arrays[i] = Arrays.copyOf(other.arrays[i], counts[i]);
+        }
+    }
+
+    /**
+    Returns the number of tiles in the set.
+    @return the cardinality of the set
+    */
+    public int cardinality(){
+        return cardinality;
+    }
+
+    /**
+    Same as cardinality(), for symmetry with the collections used elsewhere.
+    @return the number of tiles in the set
+    */
+    public int size(){
+        return cardinality;
+    }
+
+    /**
+    Returns true if and only if the set has no tiles.
+    @return true iff the cardinality is 0
+    */
+    public boolean isEmpty(){
+        return cardinality == 0;
+    }
+
+    /**
+    Returns true if and only if the tile with the given index is in the set.
+    @param id the index of a tile
+    @return true iff the set contains the index
+    */
+    public boolean contains(int id){
+        if(id < 0)
+            return false;
+        int block = findBlock(id >>> 16);
+        if(block < 0)
+            return false;
+        char low = (char) id;
+        if(bitmaps[block] != null)
+            return (bitmaps[block][low >>> 6] & (1L << low)) != 0;
+        return Arrays.binarySearch(arrays[block], 0, counts[block], low) >= 0;
+    }
+
+    /**
+    Adds the tile with the given index to the set.
+    @param id the index of a tile
+    @return true iff the set did not already contain the index
+    @throws IllegalArgumentException if the index is negative
+    */
+    public boolean add(int id){
+        if(id < 0)
+            throw new IllegalArgumentException("tile indices can't be negative");
+        int block = findBlock(id >>> 16);
+        if(block < 0){
+            block = -(block + 1);
+            insertBlock(block, id >>> 16);
+        }
+        char low = (char) id;
+        if(bitmaps[block] != null){
+            long[] bitmap = bitmaps[block];
+            if((bitmap[low >>> 6] & (1L << low)) != 0)
+                return false;
+            bitmap[low >>> 6] |= 1L << low;
+        }
+        else {
+            int position = Arrays.binarySearch(arrays[block], 0, counts[block], low);
+            if(position >= 0)
+                return false;
+            if(counts[block] == ARRAY_MAX){
+                toBitmap(block);
+                bitmaps[block][low >>> 6] |= 1L << low;
+            }
+            else {
+                position = -(position + 1);
+                char[] array = arrays[block];
+                if(counts[block] == array.length)
+                    array = arrays[block] = Arrays.copyOf(array, Math.min(ARRAY_MAX, 2*array.length));
+                System.arraycopy(array, position, array, position + 1, counts[block] - position);
+                array[position] = low;
+            }
+        }
+        counts[block]++;
+        cardinality++;
+        return true;
+    }
+
+    /**
+    Removes the tile with the given index from the set.
+    @param id the index of a tile
+    @return true iff the set contained the index
+    */
+    public boolean remove(int id){
+        if(id < 0)
+            return false;
+        int block = findBlock(id >>> 16);
+        if(block < 0)
+            return false;
+        char low = (char) id;
+        if(bitmaps[block] != null){
+            long[] bitmap = bitmaps[block];
+            if((bitmap[low >>> 6] & (1L << low)) == 0)
+                return false;
+            bitmap[low >>> 6] &= ~(1L << low);
+            counts[block]--;
+            if(counts[block] < ARRAY_MAX/2)
+                toArray(block);
+        }
+        else {
+            int position = Arrays.binarySearch(arrays[block], 0, counts[block], low);
+            if(position < 0)
+                return false;
+            System.arraycopy(arrays[block], position + 1, arrays[block], position, counts[block] - position - 1);
+            counts[block]--;
+        }
+        cardinality--;
+        if(counts[block] == 0)
+            removeBlock(block);
+        return true;
+    }
+
+    /**
+    Removes every tile from the set.
+    */
+    public void clear(){
+        Arrays.fill(arrays, null);
+        Arrays.fill(bitmaps, null);
+        blocks = 0;
+        cardinality = 0;
+    }
+
+    /**
+    Returns the smallest index in the set that is at least the given one.
+    @param from the smallest index that can be returned
+    @return the next index in the set, or -1 if there is none
+    */
+    public int next(int from){
+        if(from < 0)
+            from = 0;
+        int block = findBlock(from >>> 16);
+        int low = from & 0xFFFF;
+        if(block < 0){
+            block = -(block + 1);
+            low = 0;
+        }
+        int found;
+        for(; block < blocks; block++, low = 0){
+            found = nextInBlock(block, low);
+            if(found >= 0)
+                return (keys[block] << 16) | found;
+        }
+        return -1;
+    }
+
+    /**
+    Returns the smallest index in the set.
+    @return the first index, or -1 if the set is empty
+    */
+    public int first(){
+        return next(0);
+    }
+
+    /**
+    Returns the largest index in the set.
+    @return the last index, or -1 if the set is empty
+    */
+    public int last(){
+        if(blocks == 0)
+            return -1;
+        int block = blocks - 1;
+        if(bitmaps[block] != null){ // a block always has a tile, so some word is not 0
+            int word = WORDS - 1;
+            while(bitmaps[block][word] == 0)
+                word--;
+            return (keys[block] << 16) | ((word << 6) + 63 - Long.numberOfLeadingZeros(bitmaps[block][word]));
+        }
+        return (keys[block] << 16) | arrays[block][counts[block] - 1];
+    }
+
+    /**
+    Returns every index in the set.
+    @return the indices in ascending order
+    */
+    public int[] toArray(){
+        int[] ids = new int[cardinality];
+        int count = 0;
+        PrimitiveIterator.OfInt iterator = iterator();
+        while(iterator.hasNext())
+            ids[count++] = iterator.nextInt();
+        return ids;
+    }
+
+    /**
+    Returns an iterator over the indices in ascending order. Use nextInt() to avoid boxing.
+    The set must not be changed while it is being iterated over.
+    @return an iterator over the set
+    */
+    @Override
+    public PrimitiveIterator.OfInt iterator(){
+        return new PrimitiveIterator.OfInt(){
+            int block = 0;
+            int position = 0; // the next array position, or the next bit of the bitmap that will be checked
+            int upcoming = advance();
+
+            /**
+            Finds the next index at or after the current position, moving past it.
+            */
+            private int advance(){
+                for(; block < blocks; block++, position = 0){
+                    if(bitmaps[block] != null){
+                        int low = nextInBlock(block, position);
+                        if(low >= 0){
+                            position = low + 1;
+                            return (keys[block] << 16) | low;
+                        }
+                    }
+                    else if(position < counts[block])
+                        return (keys[block] << 16) | arrays[block][position++];
+                }
+                return -1;
+            }
+
+            @Override
+            public boolean hasNext(){
+                return upcoming >= 0;
+            }
+
+            @Override
+            public int nextInt(){
+                if(upcoming < 0)
+                    throw new NoSuchElementException();
+                int id = upcoming;
+                upcoming = advance();
+                return id;
+            }
+        };
+    }
+
+    /**
+    Returns a new set of the tiles that are in both sets.
+    @param a a set of tiles
+    @param b another set of tiles
+    @return the intersection of the sets
+    */
+    public static TileSet and(TileSet a, TileSet b){
+        return combine(a, b, AND);
+    }
+
+    /**
+    Returns a new set of the tiles that are in either set.
+    @param a a set of tiles
+    @param b another set of tiles
+    @return the union of the sets
+    */
+    public static TileSet or(TileSet a, TileSet b){
+        return combine(a, b, OR);
+    }
+
+    /**
+    Returns a new set of the tiles that are in the first set but not the second.
+    @param a a set of tiles
+    @param b the tiles that will be left out
+    @return the difference of the sets
+    */
+    public static TileSet andNot(TileSet a, TileSet b){
+        return combine(a, b, AND_NOT);
+    }
+
+    /**
+    The operations that combine can do.
+    */
+    private static final int AND = 0;
+    private static final int OR = 1;
+    private static final int AND_NOT = 2;
+
+    /**
+    Combines two sets block by block. Blocks that are only in one set are copied or skipped depending on the operation,
+    two arrays are merged, and anything involving a bitmap is done a word at a time.
+    */
+    private static TileSet combine(TileSet a, TileSet b, int operation){
+        TileSet result = new TileSet();
+        int i = 0;
+        int j = 0;
+        while(i < a.blocks || j < b.blocks){
+            if(j >= b.blocks || (i < a.blocks && a.keys[i] < b.keys[j])){
+                if(operation != AND)
+                    result.appendCopy(a, i);
+                i++;
+            }
+            else if(i >= a.blocks || b.keys[j] < a.keys[i]){
+                if(operation == OR)
+                    result.appendCopy(b, j);
+                j++;
+            }
+            else {
+                if(a.bitmaps[i] == null && b.bitmaps[j] == null)
+                    result.appendMerged(a.keys[i], a.arrays[i], a.counts[i], b.arrays[j], b.counts[j], operation);
+                else
+                    result.appendWords(a.keys[i], a.bitmapOf(i), b.bitmapOf(j), operation);
+                i++;
+                j++;
+            }
+        }
+        return result;
+    }
+
+    /**
+    Adds a copy of a block of another set after every block of this one.
+    */
+    private void appendCopy(TileSet other, int block){
+        insertBlock(blocks, other.keys[block]);
+        int last = blocks - 1;
+        if(other.bitmaps[block] != null){
+            arrays[last] = null;
+            bitmaps[last] = other.bitmaps[block].clone();
+        }
+        else
+            arrays[last] = Arrays.copyOf(other.arrays[block], Math.max(1, other.counts[block]));
+        counts[last] = other.counts[block];
+        cardinality += counts[last];
+    }
+
+    /**
+    Merges two sorted arrays of a block with the given key and adds the result after every block of this one, unless it is empty.
+    */
+    private void appendMerged(int key, char[] a, int aCount, char[] b, int bCount, int operation){
+        char[] merged = new char[(operation == OR ? aCount + bCount : aCount)];
+        int count = 0;
+        int i = 0;
+        int j = 0;
+        while(i < aCount || j < bCount){
+            if(j >= bCount || (i < aCount && a[i] < b[j])){
+                if(operation != AND)
+                    merged[count++] = a[i];
+                i++;
+            }
+            else if(i >= aCount || b[j] < a[i]){
+                if(operation == OR)
+                    merged[count++] = b[j];
+                j++;
+            }
+            else {
+                if(operation != AND_NOT)
+                    merged[count++] = a[i];
+                i++;
+                j++;
+            }
+        }
+        if(count == 0)
+            return;
+        if(count > ARRAY_MAX){ // only a union can grow this large
+            long[] bitmap = new long[WORDS];
+            for(int k = 0; k < count; k++)
+                bitmap[merged[k] >>> 6] |= 1L << merged[k];
+            appendBitmap(key, bitmap, count);
+            return;
+        }
+        insertBlock(blocks, key);
+        arrays[blocks-1] = merged;
+        counts[blocks-1] = count;
+        cardinality += count;
+    }
+
+    /**
+    Combines two bitmaps of a block with the given key and adds the result after every block of this one, unless it is empty.
+    */
+    private void appendWords(int key, long[] a, long[] b, int operation){
+        long[] words = new long[WORDS];
+        int count = 0;
+        for(int w = 0; w < WORDS; w++){
+            words[w] = (operation == AND ? a[w] & b[w] : (operation == OR ? a[w] | b[w] : a[w] & ~b[w]));
+            count += Long.bitCount(words[w]);
+        }
+        if(count > 0)
+            appendBitmap(key, words, count);
+    }
+
+    /**
+    Adds a bitmap block after every block of this one, turning it into an array if it is sparse enough.
+    */
+    private void appendBitmap(int key, long[] bitmap, int count){
+        insertBlock(blocks, key);
+        int last = blocks - 1;
+        arrays[last] = null;
+        bitmaps[last] = bitmap;
+        counts[last] = count;
+        cardinality += count;
+        if(count <= ARRAY_MAX)
+            toArray(last);
+    }
+
+    /**
+    Returns the bitmap of a block, making a temporary one if it is stored as an array.
+    */
+    private long[] bitmapOf(int block){
+        if(bitmaps[block] != null)
+            return bitmaps[block];
+        long[] bitmap = new long[WORDS];
+        for(int i = 0; i < counts[block]; i++)
+            bitmap[arrays[block][i] >>> 6] |= 1L << arrays[block][i];
+        return bitmap;
+    }
+
+    /**
+    Returns the smallest lower 16 bits in a block that are at least low, or -1 if there are none.
+    */
+    private int nextInBlock(int block, int low){
+        if(bitmaps[block] != null){
+            long[] bitmap = bitmaps[block];
+            int word = low >>> 6;
+            if(word >= WORDS)
+                return -1;
+            long bits = bitmap[word] & (-1L << low);
+            while(true){
+                if(bits != 0)
+                    return (word << 6) + Long.numberOfTrailingZeros(bits);
+                if(++word == WORDS)
+                    return -1;
+                bits = bitmap[word];
+            }
+        }
+        if(low > 0xFFFF)
+            return -1;
+        int position = Arrays.binarySearch(arrays[block], 0, counts[block], (char) low);
+        if(position < 0)
+            position = -(position + 1);
+        return (position < counts[block] ? arrays[block][position] : -1);
+    }
+
+    /**
+    Returns the position of the block with the given key, or -(insertion point + 1) if there is none.
+    */
+    private int findBlock(int key){
+        return Arrays.binarySearch(keys, 0, blocks, key);
+    }
+
+    /**
+    Inserts an empty array block with the given key at the given position.
+    */
+    private void insertBlock(int position, int key){
+        if(blocks == keys.length){
+            int length = 2*keys.length;
+            keys = Arrays.copyOf(keys, length);
+            arrays = Arrays.copyOf(arrays, length);
+            bitmaps = Arrays.copyOf(bitmaps, length);
+            counts = Arrays.copyOf(counts, length);
+        }
+        System.arraycopy(keys, position, keys, position + 1, blocks - position);
+        System.arraycopy(arrays, position, arrays, position + 1, blocks - position);
+        System.arraycopy(bitmaps, position, bitmaps, position + 1, blocks - position);
+        System.arraycopy(counts, position, counts, position + 1, blocks - position);
+        keys[position] = key;
+        arrays[position] = new char[4];
+        bitmaps[position] = null;
+        counts[position] = 0;
+        blocks++;
+    }
+
+    /**
+    Removes the block at the given position.
+    */
+    private void removeBlock(int position){
+        System.arraycopy(keys, position + 1, keys, position, blocks - position - 1);
+        System.arraycopy(arrays, position + 1, arrays, position, blocks - position - 1);
+        System.arraycopy(bitmaps, position + 1, bitmaps, position, blocks - position - 1);
+        System.arraycopy(counts, position + 1, counts, position, blocks - position - 1);
+        blocks--;
+        arrays[blocks] = null;
+        bitmaps[blocks] = null;
+    }
+
+    /**
+    Converts an array block to a bitmap.
+    */
+    private void toBitmap(int block){
+        bitmaps[block] = bitmapOf(block);
+        arrays[block] = null;
+    }
+
+    /**
+    Converts a bitmap block to an array.
+    */
+    private void toArray(int block){
+        long[] bitmap = bitmaps[block];
+        char[] array = new char[Math.max(1, counts[block])];
+        int count = 0;
+        long bits;
+        for(int word = 0; word < WORDS; word++){
+            bits = bitmap[word];
+            while(bits != 0){
+                array[count++] = (char) ((word << 6) + Long.numberOfTrailingZeros(bits));
+                bits &= bits - 1;
+            }
+        }
+        arrays[block] = array;
+        bitmaps[block] = null;
+    }
+
+    /**
+    Two tile sets are equal if they contain the same indices, no matter how their blocks are stored.
+    @param other the other TileSet
+    @return true if and only if the sets have the same indices
+    */
+    @Override
+    public boolean equals(Object other){
+        if(!(other instanceof TileSet))
+            return false;
+        TileSet set = (TileSet) other;
+        if(cardinality != set.cardinality || blocks != set.blocks)
+            return false;
+        PrimitiveIterator.OfInt mine = iterator();
+        PrimitiveIterator.OfInt theirs = set.iterator();
+        while(mine.hasNext())
+            if(mine.nextInt() != theirs.nextInt())
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode(){
+        int code = 1;
+        PrimitiveIterator.OfInt iterator = iterator();
+        while(iterator.hasNext())
+            code = 31*code + iterator.nextInt();
+        return code;
+    }
+
+    @Override
+    public String toString(){
+        return Arrays.toString(toArray());
+    }
+}
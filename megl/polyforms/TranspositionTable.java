@@ -0,0 +1,196 @@
+package megl.polyforms;
+
+import java.util.Arrays;
+
+/**
+Remembers the keys of the polyforms a search has reached (see ZobristKeys), in a table of fixed size, so that the
+memory a search uses does not grow with the number of polyforms it reaches. When the table is full, keys are forgotten
+to make room, so a search may reach a polyform it has forgotten again and search it twice, which only costs time.
+The table is split into buckets of BUCKET_SIZE keys, which fill one cache line. A key can only be in the bucket its hash
+points to. When that bucket is full, a key of it is replaced by the clock algorithm: each key has a bit that is set
+when it is reached again, and a hand moves through the bucket, clearing set bits, until it finds a key whose bit is clear.
+Keys that are reached again often are kept, and the others are replaced about in the order they were added.
+The counts of hits, misses and evictions show how well the capacity suits a search. A table is not thread safe.
+*/
+public class TranspositionTable {
+    /**
+    The number of keys in each bucket.
+    */
+    static final int BUCKET_SIZE = 8;
+
+    /**
+    The keys in the table, one bucket after another, with 0 for an empty slot.
+    */
+    final long[] table;
+
+    /**
+    Whether each slot has been reached again since the hand of its bucket last passed it, as one bit for each slot.
+    */
+    final long[] referenced;
+
+    /**
+    The slot of each bucket that the clock hand points at.
+    */
+    final byte[] hands;
+
+    /**
+    Whether the key 0 is in the table. It is never evicted.
+    */
+    boolean hasZero;
+
+    /**
+    The number of keys in the table.
+    */
+    int size;
+
+    /**
+    The number of keys that were already in the table when they were added.
+    */
+    long hits;
+
+    /**
+    The number of keys that were not in the table when they were added.
+    */
+    long misses;
+
+    /**
+    The number of keys that were forgotten to make room for others.
+    */
+    long evictions;
+
+    /**
+    Makes an empty table that holds at least the given number of keys, rounded up to a power of two.
+    It uses a little over 8 bytes for each key it can hold.
+    @param capacity the number of keys the table can hold
+    @throws IllegalArgumentException if the capacity is less than 1 or more than 2^30
+    */
+    public TranspositionTable(int capacity){
+        if(capacity < 1 || capacity > (1 << 30))
+            throw new IllegalArgumentException("the capacity of a transposition table must be from 1 to 2^30");
+        int slots = Math.max(BUCKET_SIZE, Integer.highestOneBit(capacity - 1) << 1);
+        this.table = new long[slots];
+        this.referenced = new long[(slots + 63)/64];
+        this.hands = new byte[slots/BUCKET_SIZE];
+    }
+
+    /**
+    Returns the first slot of the bucket of a key. The key is mixed again, since keys that differ only in their high bits
+    would otherwise be in the same bucket.
+    */
+    private int bucket(long key){
+        key *= 0x9e3779b97f4a7c15L;
+        return ((int) (key ^ (key >>> 32)) & (hands.length - 1))*BUCKET_SIZE;
+    }
+
+    /**
+    Adds a key to the table, replacing a key of its bucket if the bucket is full.
+    @param key the key of a polyform
+    @return true if the key was not in the table, so the polyform has not been reached or was forgotten
+    */
+    public boolean add(long key){
+        if(key == 0){
+            if(hasZero){
+                hits++;
+                return false;
+            }
+            hasZero = true;
+            size++;
+            misses++;
+            return true;
+        }
+        int start = bucket(key), slot;
+        for(slot = start; slot < start + BUCKET_SIZE; slot++){
+            if(table[slot] == key){
+                referenced[slot >>> 6] |= 1L << slot;
+                hits++;
+                return false;
+            }
+            if(table[slot] == 0)
+                break;
+        }
+        misses++;
+        if(slot == start + BUCKET_SIZE){ // the bucket is full
+            int bucket = start/BUCKET_SIZE;
+            slot = start + hands[bucket];
+            while((referenced[slot >>> 6] & (1L << slot)) != 0){
+                referenced[slot >>> 6] &= ~(1L << slot);
+                slot = (slot + 1 == start + BUCKET_SIZE ? start : slot + 1);
+            }
+            hands[bucket] = (byte) ((slot + 1 - start) % BUCKET_SIZE);
+            evictions++;
+        }
+        else
+            size++;
+        table[slot] = key;
+        return true;
+    }
+
+    /**
+    Returns true if and only if the key is in the table, without counting a hit or miss.
+    @param key the key of a polyform
+    @return true iff the key was added and has not been evicted
+    */
+    public boolean contains(long key){
+        if(key == 0)
+            return hasZero;
+        int start = bucket(key);
+        for(int slot = start; slot < start + BUCKET_SIZE && table[slot] != 0; slot++)
+            if(table[slot] == key)
+                return true;
+        return false;
+    }
+
+    /**
+    Removes every key from the table and sets the counts to 0.
+    */
+    public void clear(){
+        Arrays.fill(table, 0);
+        Arrays.fill(referenced, 0);
+        Arrays.fill(hands, (byte) 0);
+        hasZero = false;
+        size = 0;
+        hits = 0;
+        misses = 0;
+        evictions = 0;
+    }
+
+    /**
+    Returns the number of keys the table can hold.
+    @return the capacity, which is a power of two
+    */
+    public int getCapacity(){
+        return table.length;
+    }
+
+    /**
+    Returns the number of keys in the table.
+    @return the number of keys
+    */
+    public int size(){
+        return size;
+    }
+
+    /**
+    Returns the number of keys that were already in the table when they were added.
+    @return the number of hits
+    */
+    public long getHits(){
+        return hits;
+    }
+
+    /**
+    Returns the number of keys that were not in the table when they were added, including ones that were evicted before.
+    @return the number of misses
+    */
+    public long getMisses(){
+        return misses;
+    }
+
+    /**
+    Returns the number of keys that were forgotten to make room for others.
+    @return the number of evictions
+    */
+    public long getEvictions(){
+        return evictions;
+    }
+}
@@ -0,0 +1,73 @@
+package megl.polyforms;
+
+import java.util.PrimitiveIterator;
+
+/**
+Gives every tile a 64 bit key so that a polyform can be identified by the XOR of the keys of its tiles.
+Adding or removing a tile changes a polyform's key by XORing it with the tile's key, which takes O(1) time.
+A tile's key only depends on its ring and position, so it is the same in every tessellation that has the tile,
+including lazy tessellations that grow while a polyform is being built.
+The key is the coordinates mixed by a bijective 64 bit function, so different tiles always have different keys,
+but two different polyforms can still share a key. The chance of that is about n^2 / 2^65 among n polyforms,
+which is small enough that PolyformFinder treats polyforms with the same key as the same polyform.
+CompactTessellation keeps a table of the keys of its tiles (see CompactTessellation.key).
+*/
+public final class ZobristKeys {
+    /**
+    Only static methods are used.
+    */
+    private ZobristKeys(){
+    }
+
+    /**
+    Returns the key of the tile at the given coordinates.
+    @param ringNum which ring of the tessellation the tile is in
+    @param ringPos where in its ring the tile is
+    @return the key of the tile, which is never the same as the key of another tile
+    */
+    public static long key(int ringNum, int ringPos){
+        long z = (((long) ringNum << 32) | (ringPos & 0xffffffffL)) + 0x9e3779b97f4a7c15L;
+        z = (z ^ (z >>> 30)) * 0xbf58476d1ce4e5b9L;
+        z = (z ^ (z >>> 27)) * 0x94d049bb133111ebL;
+        return z ^ (z >>> 31);
+    }
+
+    /**
+    Returns the key of the given tile.
+    @param tile a tile of a tessellation
+    @return the key of the tile
+    */
+    public static long key(Tile tile){
+        return key(tile.ringNum, tile.ringPos);
+    }
+
+    /**
+    Returns the key of a polyform in a tessellation.
+    @param plane the tessellation containing the polyform
+    @param animal the absolute indices of the tiles composing the polyform
+    @return the XOR of the keys of the tiles, which is 0 for an empty polyform
+    */
+    public static long of(Tessellation plane, TileSet animal){
+        long key = 0;
+        Tile tile;
+        PrimitiveIterator.OfInt ids = animal.iterator();
+        while(ids.hasNext()){
+            tile = plane.tessellation.get(ids.nextInt());
+            key ^= key(tile.ringNum, tile.ringPos);
+        }
+        return key;
+    }
+
+    /**
+    Returns the key of a polyform in a compact tessellation.
+    @param plane the compact tessellation containing the polyform
+    @param animal the indices of the tiles composing the polyform, without duplicates
+    @return the XOR of the keys of the tiles, which is 0 for an empty polyform
+    */
+    public static long of(CompactTessellation plane, int[] animal){
+        long key = 0;
+        for(int id : animal)
+            key ^= plane.keys[id];
+        return key;
+    }
+}